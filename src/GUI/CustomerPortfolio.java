@@ -23,6 +23,7 @@ import java.time.LocalDate;
 import java.util.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 import src.*;
 import src.Currency;
@@ -37,6 +38,8 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
     private Manager manager;
     private String currentPanel = "savings";  //default
     private JTextArea messageTextArea;
+    // Reads the data of the pages in the background
+    private PanelLoader loader = new PanelLoader();
 
 
 
@@ -44,7 +47,8 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
         this.hp = hp;
         hp.addObserver(this);
         this.manager = manager;
-        manager.addObserver(this);
+        // Only told about stocks this customer holds
+        manager.addObserver(customer.getUsername(), this);
 
         dateLabel = createDateLabel();  // global label
 
@@ -74,7 +78,6 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
         menuPanel.setPreferredSize(new Dimension(200, 700));
         menuPanel.setMaximumSize(new Dimension(200, 700));
 
-        atm = new ATM();
         String username = atm.getUsername();
         JLabel welcomeLabel = new JLabel("<html><left>Welcome back, <br>" + username + "<left></html>");
         welcomeLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
@@ -124,13 +127,20 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
 
 
     private void setupCardPanel() {
-        cardPanel.add(createCSAccountPanel(Account.SAVINGS_ACCOUNT), "savings");
-        cardPanel.add(createCSAccountPanel(Account.CHECKINGS_ACCOUNT), "checking");
-        cardPanel.add(createSecAccountPanel(Account.SECURITIES_ACCOUNT), "security");
-        cardPanel.add(createLoanPanel("Loan Management"), "loans");
+        addCard("savings", card -> refreshPanel(card, Account.SAVINGS_ACCOUNT));
+        addCard("checking", card -> refreshPanel(card, Account.CHECKINGS_ACCOUNT));
+        addCard("security", card -> refreshSecPanel(card, Account.SECURITIES_ACCOUNT));
+        addCard("loans", card -> refreshLoanPanel(card, "Loan Management"));
         cardPanel.add(createTransferPanel("Fund Transfer"), "transfers");
-        cardPanel.add(createStockPanel("Stock Trading "), "stocks");
-        cardPanel.add(createMessagePanel("Message Box"), "messages");
+        addCard("stocks", card -> refreshStockPanel(card, "Stock Trading "));
+        addCard("messages", card -> refreshMessagePanel(card, "Message Box"));
+    }
+
+    // Adds a page that shows a loading message until refresh has read its data
+    private void addCard(String name, Consumer<JPanel> refresh) {
+        JPanel card = new JPanel(new BorderLayout());
+        refresh.accept(card);
+        cardPanel.add(card, name);
     }
 
     private void addButton(String text, String command) {
@@ -182,13 +192,38 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
     }
 
     /*----------------------------------------------Checking & Saving Account--------------------------------------------------------------*/
-    private JPanel createCSAccountPanel(int accountType) {
+    // What a checking or savings page shows, read in the background
+    private static class CSAccountData {
+        double[] currentBalance;
+        double[] balances;
+        String[][] transactions;
+    }
+
+    private String getCSAccountTitle(int accountType) {
         String text = "";
         if (accountType == Account.SAVINGS_ACCOUNT) {
             text = "Savings Account";
         } else if (accountType == Account.CHECKINGS_ACCOUNT) {
             text = "Checking Account";
         }
+        return text;
+    }
+
+    // Runs in the background, so it reads the customer from the database and
+    // leaves the ATM's session alone
+    private CSAccountData loadCSAccountData(String username, int accountType) {
+        CSAccountData data = new CSAccountData();
+        Customer customer = CustomerDatabase.getCustomer(username);
+        data.currentBalance = ATM.viewBalance(customer.getBankAccount(accountType));
+        if (data.currentBalance[4] != -1) {
+            data.balances = getAccountBalance(username, getCSAccountTitle(accountType));
+            data.transactions = getTransactionHistory(username, accountType);
+        }
+        return data;
+    }
+
+    private JPanel createCSAccountPanel(int accountType, CSAccountData data) {
+        String text = getCSAccountTitle(accountType);
         JPanel panel = new JPanel(new BorderLayout());
         JLabel titleLabel = new JLabel(text, JLabel.CENTER);
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
@@ -196,7 +231,7 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
         panel.add(titleLabel, BorderLayout.NORTH);
 
         // 4th index indicates if the account exists
-        if (atm.viewCurrentBalance(accountType)[4] == -1) {
+        if (data.currentBalance[4] == -1) {
             // If there is no account yet, show create account button
             JPanel messagePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
             JLabel messageLabel = new JLabel("<html>It seems like you don't have a " + text + " yet. Would you like to create one? <br>(You will be charged $200 for creating an account)</html>");
@@ -222,7 +257,7 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
         } else {
             // If the customer already created an account, show all information, deposit/withdraw button and Close Account button
             // Account information display updated
-            double[] balances = getAccountBalance(text);
+            double[] balances = data.balances;
             JPanel accountInfoPanel = new JPanel(new GridLayout(5, 2, 10, 10));  // Adjust grid layout for better arrangement
 
             addBalanceLabel(accountInfoPanel, "Total Balance: $", balances[0], new Color(8, 117, 39));
@@ -254,7 +289,7 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
             accountInfoPanel.add(buttonPanel);
 
             panel.add(accountInfoPanel, BorderLayout.CENTER);
-            panel.add(createTransactionHistoryPanel(accountType), BorderLayout.EAST);
+            panel.add(createTransactionHistoryPanel(data.transactions), BorderLayout.EAST);
         }
 
 
@@ -433,9 +468,9 @@ public class CustomerPortfolio extends JFrame implements ButtonObserver, Securit
 
     }
 
-private double[] getAccountBalance(String text) {
+private double[] getAccountBalance(String username, String text) {
     int accountType = text.equals("Savings Account") ? Account.SAVINGS_ACCOUNT : Account.CHECKINGS_ACCOUNT;
-    return CustomerDatabase.getAccountBalanceFromCSV(atm.getUsername(), accountType);
+    return CustomerDatabase.getAccountBalanceFromCSV(username, accountType);
 }
 
     private void closeAccount(int accountType) {
@@ -462,11 +497,8 @@ private double[] getAccountBalance(String text) {
         }
         
     }
-    private JScrollPane createTransactionHistoryPanel(int accountType) {
-        String username = atm.getUsername();
-        List<Transaction> transactions = atm.viewTransactions(accountType);
-        // Simulate fetching transaction history data
-        String[] columnNames = {"Date", "Type", "Amount", "Currency", "Transfer Target"};
+    private String[][] getTransactionHistory(String username, int accountType) {
+        List<Transaction> transactions = TransactionDatabase.getTransactionsFromUser(username, accountType);
         List<String[]> ls = new ArrayList<>();
         for (Transaction t : transactions) {
             String[] curr = {t.getDate().toString(), "", String.valueOf(t.getCurrency().getAmount()),
@@ -487,9 +519,11 @@ private double[] getAccountBalance(String text) {
             }
             ls.add(curr);
         }
-        String[][] data = ls.toArray(new String[0][]);
-        ;
+        return ls.toArray(new String[0][]);
+    }
 
+    private JScrollPane createTransactionHistoryPanel(String[][] data) {
+        String[] columnNames = {"Date", "Type", "Amount", "Currency", "Transfer Target"};
         DefaultTableModel model = new DefaultTableModel(data, columnNames) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -507,19 +541,37 @@ private double[] getAccountBalance(String text) {
 
 
     private void refreshPanel(JPanel panel, int accountType) {
-        panel.removeAll();  //
-        panel.revalidate();  //
-        panel.repaint();  //
-
-        JPanel updatedPanel = createCSAccountPanel(accountType);
-        panel.add(updatedPanel);
-        panel.revalidate();
-        panel.repaint();
+        String username = atm.getUsername();
+        loader.load(panel, () -> loadCSAccountData(username, accountType), data -> createCSAccountPanel(accountType, data));
     }
     /*----------------------------------------------Checking & Saving Account--------------------------------------------------------------*/
 
     /*-------------------------------------------------Security Account--------------------------------------------------------------*/
-    private JPanel createSecAccountPanel(int accountType) {
+    // What the security account page shows, read in the background
+    private static class SecAccountData {
+        double[] balances;
+        SecurityAccount secAcc;
+        double unrealizedProfit;
+        double realizedProfit;
+        String[][] transactions;
+    }
+
+    private SecAccountData loadSecAccountData(String username, int accountType) {
+        SecAccountData data = new SecAccountData();
+        Customer customer = CustomerDatabase.getCustomer(username);
+        data.secAcc = (SecurityAccount) customer.getBankAccount(Account.SECURITIES_ACCOUNT);
+        data.balances = ATM.viewSecBalance(data.secAcc);
+        if (data.balances[4] != -1) {
+            if (data.secAcc.isEnabled()) {
+                data.unrealizedProfit = data.secAcc.getStockPortfolio().updateUnrealizedProfit(username);
+                data.realizedProfit = StockDatabase.getRealizedProfit(username);
+                data.transactions = getTransactionHistory(username, accountType);
+            }
+        }
+        return data;
+    }
+
+    private JPanel createSecAccountPanel(int accountType, SecAccountData data) {
         String text ="Security Account";
         JPanel panel = new JPanel(new BorderLayout());
         JLabel titleLabel = new JLabel(text, JLabel.CENTER);
@@ -528,7 +580,7 @@ private double[] getAccountBalance(String text) {
         panel.add(titleLabel, BorderLayout.NORTH);
 
         // Check if the account exists
-        if (atm.viewCurrentSecBalance(accountType)[4] == -1) {
+        if (data.balances[4] == -1) {
             // If there is no account yet, show the create account button with specific instructions
             JPanel messagePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
             JLabel messageLabel = new JLabel("<html><p style=\"text-align: center\">How do the security account work?</p><br>" +
@@ -566,15 +618,15 @@ private double[] getAccountBalance(String text) {
             panel.add(createButton, BorderLayout.SOUTH);
         } else {
             // Display account information
-            SecurityAccount secAcc = (SecurityAccount) atm.getBankAccount(Account.SECURITIES_ACCOUNT);
+            SecurityAccount secAcc = data.secAcc;
             System.out.println(secAcc);
             if (secAcc.isEnabled()) {
                 JPanel accountInfoPanel = new JPanel(new GridLayout(5, 2, 10, 10));
-                double[] balances = getSecAccountBalance(text);
+                double[] balances = data.balances;
                 addBalanceLabel(accountInfoPanel, "Total Balance: $", balances[0],new Color(0,0,0));
                 addBalanceLabel(accountInfoPanel, "USD Balance: $", balances[1],new Color(0,123,0));
-                addBalanceLabel(accountInfoPanel, "Unrealized Profit: $", secAcc.getStockPortfolio().updateUnrealizedProfit(atm.getUsername()), new Color(123,0,0));
-                addBalanceLabel(accountInfoPanel, "Realized Balance: $", StockDatabase.getRealizedProfit(atm.getUsername()),new Color(0,0,123));
+                addBalanceLabel(accountInfoPanel, "Unrealized Profit: $", data.unrealizedProfit, new Color(123,0,0));
+                addBalanceLabel(accountInfoPanel, "Realized Balance: $", data.realizedProfit,new Color(0,0,123));
 
                 JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
 
@@ -598,7 +650,7 @@ private double[] getAccountBalance(String text) {
                 accountInfoPanel.add(buttonPanel);
 
                 panel.add(accountInfoPanel, BorderLayout.CENTER);
-                panel.add(createTransactionHistoryPanel(accountType), BorderLayout.EAST);
+                panel.add(createTransactionHistoryPanel(data.transactions), BorderLayout.EAST);
             } else {
                 JOptionPane.showMessageDialog(this, "Your security account is currently disabled.\nMake sure you keep your saving account balance over $2500 to re-enable it.", "Account Disabled", JOptionPane.WARNING_MESSAGE);
             }
@@ -620,39 +672,23 @@ private double[] getAccountBalance(String text) {
         return 0;
     }
 
-    private double [] getSecAccountBalance(String text) {
-        // get amount logic
-        double[] balance = null;
-        if (text.equals("Security Account")){
-            balance = atm.viewCurrentSecBalance(Account.SECURITIES_ACCOUNT);
-        } else {
-        }
-        return balance;  // test
-    }
-
     private void refreshSecPanel(JPanel panel, int accountType) {
-        panel.removeAll();  //
-        panel.revalidate();  //
-        panel.repaint();  //
-
-        JPanel updatedPanel = createSecAccountPanel(accountType);
-        panel.add(updatedPanel);
-        panel.revalidate();
-        panel.repaint();
+        String username = atm.getUsername();
+        loader.load(panel, () -> loadSecAccountData(username, accountType), data -> createSecAccountPanel(accountType, data));
     }
 
     /*-------------------------------------------------Security Account--------------------------------------------------------------*/
 
     /*----------------------------------------------------Loan--------------------------------------------------------------*/
 
-    private JPanel createLoanPanel(String text) {
+    private JPanel createLoanPanel(String text, List<Loan> loans) {
         JPanel panel = new JPanel(new BorderLayout());
         JLabel titleLabel = new JLabel(text, JLabel.CENTER);
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         titleLabel.setHorizontalAlignment(JLabel.CENTER);
         panel.add(titleLabel, BorderLayout.NORTH);
 
-        if (LoanDatabase.getAllLoans(atm.getUsername(), false) == null) {
+        if (loans == null) {
             // Information area about how loans work
             JPanel messagePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
             JLabel messageLabel = new JLabel("<html><p style=\"text-align: justify\">Loan process involves collateral. " +
@@ -663,7 +699,7 @@ private double[] getAccountBalance(String text) {
             panel.add(messagePanel, BorderLayout.CENTER);
         } else {
             // Loan Data Panel
-            JPanel loanDataPanel = createLoanDataPanel();
+            JPanel loanDataPanel = createLoanDataPanel(loans);
             panel.add(loanDataPanel, BorderLayout.CENTER);
         }
 
@@ -736,7 +772,7 @@ private double[] getAccountBalance(String text) {
         return panel;
     }
 
-    private JPanel createLoanDataPanel() {
+    private JPanel createLoanDataPanel(List<Loan> customerLoans) {
         JPanel loanDataPanel = new JPanel(new BorderLayout());
         JLabel loanTableLabel = new JLabel("Stock Details", JLabel.CENTER);
         loanTableLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
@@ -745,7 +781,6 @@ private double[] getAccountBalance(String text) {
         String[] columnNames = {"Collateral", "Current Loan Amount"};
     
         List<String[]> data = new ArrayList<>();
-        List<Loan> customerLoans = LoanDatabase.getAllLoans(atm.getUsername(), false);
         for (Loan loan : customerLoans) {
             data.add(new String[]{loan.getCollateral(), String.valueOf(loan.getLoanAmount()), "", ""});
         }
@@ -821,14 +856,8 @@ private double[] getAccountBalance(String text) {
     }
 
     private void refreshLoanPanel(JPanel panel, String text) {
-        panel.removeAll();  //
-        panel.revalidate();  //
-        panel.repaint();  //
-
-        JPanel updatedPanel = createLoanPanel(text);
-        panel.add(updatedPanel);
-        panel.revalidate();
-        panel.repaint();
+        String username = atm.getUsername();
+        loader.load(panel, () -> LoanDatabase.getAllLoans(username, false), loans -> createLoanPanel(text, loans));
     }
 
     /*----------------------------------------------------Loan--------------------------------------------------------------*/
@@ -949,44 +978,67 @@ private double[] getAccountBalance(String text) {
 
     /*----------------------------------------------------Stocks--------------------------------------------------------------*/
 
-    private JPanel createStockPanel(String text) {
-        JPanel panel = new JPanel(new BorderLayout());
-        JLabel titleStockLabel = new JLabel(text, JLabel.CENTER);
-        titleStockLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
-        panel.add(titleStockLabel, BorderLayout.NORTH);
-
-        JPanel tablesPanel = new JPanel(new GridLayout(1, 2)); // 2 tables (Horizontal)
-
-        // StockTable
-        JPanel stockDataPanel = new JPanel(new BorderLayout());
-        JLabel stockTableLabel = new JLabel("Stock Details", JLabel.CENTER);
-        stockTableLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        stockDataPanel.add(stockTableLabel, BorderLayout.NORTH);
-
-        String[] columnNames = {"Stock Name", "Current Price", "Holding Shares", "Unrealized Profits"};
+    // What the stock page shows, read in the background
+    private static class StockData {
+        String[][] stocks;
+        String[][] history;
+    }
 
+    private StockData loadStockData(String username) {
+        StockData stockData = new StockData();
         List<String[]> data = new ArrayList<>();
         List<Stock> ls = StockDatabase.getAllStocks();
         for (Stock s : ls) {
             data.add(new String[]{s.getName(), String.valueOf(s.getPrice()), "", ""});
         }
 
-        SecurityAccount secAcc = (SecurityAccount) atm.getBankAccount(Account.SECURITIES_ACCOUNT);
+        SecurityAccount secAcc = (SecurityAccount) CustomerDatabase.getCustomer(username).getBankAccount(Account.SECURITIES_ACCOUNT);
 
 
         if (secAcc != null) {
-            secAcc.getStockPortfolio().updateUnrealizedProfit(atm.getUsername());
+            secAcc.getStockPortfolio().updateUnrealizedProfit(username);
             Map<String, Double> unrealizedProfitHm = secAcc.getStockPortfolio().getUnrealizedProfitPerStock();
             for (String[] row : data) {
-                StockDetails stockDetails = StockDatabase.getStockFromPortfolio(atm.getUsername(), row[0]);
+                StockDetails stockDetails = StockDatabase.getStockFromPortfolio(username, row[0]);
                 if (stockDetails != null) {
                     row[2] = String.valueOf(stockDetails.getAmount());
                     row[3] = String.valueOf(unrealizedProfitHm.get(row[0]));
                 }
             }
         }
-        
-        String[][] parsedData = data.toArray(new String[0][]);
+        stockData.stocks = data.toArray(new String[0][]);
+
+        List<String[]> historyLs = new ArrayList<>();
+        for (StockTransaction st : TransactionDatabase.getStockTransactionsFromUser(username)) {
+            String[] arr = {st.getDate().toString(), "", st.getStockName(), String.valueOf(st.getAmount()), String.valueOf(st.getPrice())};
+            if (st.isBuy()) {
+                arr[1] = "Buy";
+            } else {
+                arr[1] = "Sell";
+            }
+            historyLs.add(arr);
+        }
+        stockData.history = historyLs.toArray(new String[0][]);
+        return stockData;
+    }
+
+    private JPanel createStockPanel(String text, StockData stockData) {
+        JPanel panel = new JPanel(new BorderLayout());
+        JLabel titleStockLabel = new JLabel(text, JLabel.CENTER);
+        titleStockLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        panel.add(titleStockLabel, BorderLayout.NORTH);
+
+        JPanel tablesPanel = new JPanel(new GridLayout(1, 2)); // 2 tables (Horizontal)
+
+        // StockTable
+        JPanel stockDataPanel = new JPanel(new BorderLayout());
+        JLabel stockTableLabel = new JLabel("Stock Details", JLabel.CENTER);
+        stockTableLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        stockDataPanel.add(stockTableLabel, BorderLayout.NORTH);
+
+        String[] columnNames = {"Stock Name", "Current Price", "Holding Shares", "Unrealized Profits"};
+
+        String[][] parsedData = stockData.stocks;
 
         DefaultTableModel stockModel = new DefaultTableModel(parsedData, columnNames);
         JTable stockTable = new JTable(stockModel);
@@ -1001,17 +1053,7 @@ private double[] getAccountBalance(String text) {
         historyPanel.add(historyLabel, BorderLayout.NORTH);
 
         String[] historyColumns = {"Transaction Date", "Transaction Type", "Stock Name", "Shares", "Price Per Share"};
-        List<String[]> historyLs = new ArrayList<>();
-        for (StockTransaction st : TransactionDatabase.getStockTransactionsFromUser(atm.getUsername())) {
-            String[] arr = {st.getDate().toString(), "", st.getStockName(), String.valueOf(st.getAmount()), String.valueOf(st.getPrice())};
-            if (st.isBuy()) {
-                arr[1] = "Buy";
-            } else {
-                arr[1] = "Sell";
-            }
-            historyLs.add(arr);
-        }
-        String[][] historyData = historyLs.toArray(new String[0][]);
+        String[][] historyData = stockData.history;
         DefaultTableModel historyModel = new DefaultTableModel(historyData, historyColumns);
         JTable historyTable = new JTable(historyModel);
         JScrollPane historyScrollPane = new JScrollPane(historyTable);
@@ -1028,7 +1070,7 @@ private double[] getAccountBalance(String text) {
                 if (selectedRowIndex != -1) {
                     int amount = tryParseInt(buyAmount.getText());
                     if (amount > 0) {
-                        if (secAcc.buyStock(stockTable.getValueAt(selectedRowIndex, 0).toString(), Integer.parseInt(buyAmount.getText()))) {
+                        if (atm.buyStock(stockTable.getValueAt(selectedRowIndex, 0).toString(), amount)) {
                             JOptionPane.showMessageDialog(panel, "Stock bought successfully.", "Buy Successful", JOptionPane.INFORMATION_MESSAGE);
                         } else {
                             JOptionPane.showMessageDialog(panel, "Invalid stock name or insufficient fund in security account.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -1052,9 +1094,7 @@ private double[] getAccountBalance(String text) {
                 if (selectedRowIndex != -1) {
                     int amount = tryParseInt(sellAmount.getText());
                     if (amount > 0) {
-                        StockDetails stockDetails = StockDatabase.getStockFromPortfolio(atm.getUsername(), stockTable.getValueAt(selectedRowIndex, 0).toString());
-                        if (stockDetails.getAmount() >= amount) {
-                            secAcc.sellStock(stockTable.getValueAt(selectedRowIndex, 0).toString(), Integer.parseInt(sellAmount.getText()));
+                        if (atm.sellStock(stockTable.getValueAt(selectedRowIndex, 0).toString(), amount)) {
                             JOptionPane.showMessageDialog(panel, "Stock sold successfully.", "Sell Successful", JOptionPane.INFORMATION_MESSAGE);
                         } else {
                             JOptionPane.showMessageDialog(panel, "Invalid amount (You are selling more stocks than you own).", "Error", JOptionPane.ERROR_MESSAGE);
@@ -1086,20 +1126,14 @@ private double[] getAccountBalance(String text) {
     }
 
     private void refreshStockPanel(JPanel panel, String text) {
-        panel.removeAll();  //
-        panel.revalidate();  //
-        panel.repaint();  //
-
-        JPanel updatedPanel = createStockPanel(text);
-        panel.add(updatedPanel);
-        panel.revalidate();
-        panel.repaint();
+        String username = atm.getUsername();
+        loader.load(panel, () -> loadStockData(username), stockData -> createStockPanel(text, stockData));
     }
     /*----------------------------------------------------Stocks--------------------------------------------------------------*/
 
     /*----------------------------------------------------Messages--------------------------------------------------------------*/
 
-    private JPanel createMessagePanel(String text) {
+    private JPanel createMessagePanel(String text, List<String> messages) {
         JPanel panel = new JPanel(new BorderLayout());
 
         // Title Label with custom panel for margin
@@ -1113,7 +1147,10 @@ private double[] getAccountBalance(String text) {
 
         // Large JTextArea for displaying messages
 //        String text = Message.getmessage;
-        messageTextArea = new JTextArea("Here are your messages. Update this to show actual messages."); //replace with text
+        messageTextArea = new JTextArea();
+        for (String msg : messages) {
+            messageTextArea.append(msg + "\n");
+        }
         messageTextArea.setFont(new Font("Segoe UI", Font.PLAIN, 18));
         messageTextArea.setLineWrap(true);
         messageTextArea.setWrapStyleWord(true);
@@ -1136,12 +1173,16 @@ private double[] getAccountBalance(String text) {
         return panel;
     }
     private void clearMessages() {
-        MessageDatabase.clearMessages();
+        MessageDatabase.clearMessages(atm.getUsername());
         messageTextArea.setText("No new messages.");
     }
     private void fetchNewMessages() {
-        List<String> messages = MessageDatabase.readMessages();
+        List<String> messages = MessageDatabase.readMessages(atm.getUsername());
         SwingUtilities.invokeLater(() -> {
+            // The message page may still be loading
+            if (messageTextArea == null) {
+                return;
+            }
             messageTextArea.setText("");
             for (String msg : messages) {
                 messageTextArea.append(msg + "\n");
@@ -1150,15 +1191,8 @@ private double[] getAccountBalance(String text) {
     }
 
     private void refreshMessagePanel(JPanel panel, String text) {
-        panel.removeAll();  //
-        panel.revalidate();  //
-        panel.repaint();  //
-
-        JPanel updatedPanel = createMessagePanel(text);
-        panel.add(updatedPanel);
-        panel.revalidate();
-        panel.repaint();
-        fetchNewMessages();
+        String username = atm.getUsername();
+        loader.load(panel, () -> MessageDatabase.readMessages(username), messages -> createMessagePanel(text, messages));
     }
     /*----------------------------------------------------Messages--------------------------------------------------------------*/
 
@@ -1172,17 +1206,8 @@ private double[] getAccountBalance(String text) {
     }
     @Override
     public void update(Stock stock) {
-        List<String> messages = new ArrayList<>();
-        messages.add("UPDATE: " + stock.getName() + " stock has been changed.");
-        if (stock.getPrice() >= 0) {
-            messages.add(stock.getName() + " has been updated to $" + stock.getPrice() + "!!");
-        } else {
-            messages.add(stock.getName() + " has been removed, initiating all sell!");
-        }
-
-        MessageDatabase.writeMessages(messages);
+        // The Manager already put the message in this customer's mailbox
         fetchNewMessages();
-        System.out.println(messages);
     }
 
 
@@ -19,18 +19,20 @@ import src.*;
 
 
 import java.text.DecimalFormat;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
 
 import javax.swing.*;
 import javax.swing.table.*;
 
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.time.LocalDate;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 public class ManagerPortfolio extends JFrame implements ButtonObserver {
     private CardLayout cardLayout = new CardLayout();
@@ -46,6 +48,8 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
     private JPanel stockManagementPanel;
     private JPanel timeSettingPanel;
     private String currentPanel = "userData"; //default panel
+    // Reads the data of the pages in the background
+    private PanelLoader loader = new PanelLoader();
 
 
     public void refreshData() {
@@ -128,7 +132,8 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
 
     private void setupManagerCardPanel() {
         userDataPanel = createUserDataPanel();
-        transactionReportPanel = createTransactionReportPanel();
+        transactionReportPanel = new JPanel(new BorderLayout());
+        refreshTransactionReportPanel();
         loanManagementPanel = createLoanManagementPanel();
         stockManagementPanel = createStockManagementPanel();
         timeSettingPanel = createTimeSettingPanel();
@@ -167,10 +172,7 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
                 userDataPanel.repaint();
                 break;
             case "transactionReport":
-                transactionReportPanel.removeAll();
-                transactionReportPanel.add(createTransactionReportPanel());
-                transactionReportPanel.revalidate();
-                transactionReportPanel.repaint();
+                refreshTransactionReportPanel();
                 break;
             case "loanManagement":
                 loanManagementPanel.removeAll();
@@ -213,11 +215,13 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
             refreshPanel(selectedPanel, index);
         });
 
-        // create tab
-        tabbedPane.addTab("Checking Account", createAccountDetailPanel(Account.CHECKINGS_ACCOUNT));
-        tabbedPane.addTab("Savings Account", createAccountDetailPanel(Account.SAVINGS_ACCOUNT));
-        tabbedPane.addTab("Security Account", createSecAccountDetailPanel(Account.SECURITIES_ACCOUNT));
-        tabbedPane.addTab("Stocks", createCustomerStockPanel());
+        // create tab, each fills itself in once its data is read
+        String[] tabs = {"Checking Account", "Savings Account", "Security Account", "Stocks"};
+        for (int i = 0; i < tabs.length; i++) {
+            JPanel tab = new JPanel(new BorderLayout());
+            tabbedPane.addTab(tabs[i], tab);
+            refreshPanel(tab, i);
+        }
 
         userDataPanel.add(tabbedPane, BorderLayout.CENTER);
 
@@ -225,43 +229,27 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
     }
 
     private void refreshPanel(JPanel panel, int accountType) {
-        panel.removeAll();
-        JPanel newPanel = null;
         switch (accountType) {
             case 0:
-                newPanel = createAccountDetailPanel(Account.CHECKINGS_ACCOUNT);
+                loader.load(panel, () -> getAccountData(Account.CHECKINGS_ACCOUNT),
+                        data -> createAccountDetailPanel(Account.CHECKINGS_ACCOUNT, data));
                 break;
             case 1:
-                newPanel = createAccountDetailPanel(Account.SAVINGS_ACCOUNT);
+                loader.load(panel, () -> getAccountData(Account.SAVINGS_ACCOUNT),
+                        data -> createAccountDetailPanel(Account.SAVINGS_ACCOUNT, data));
                 break;
             case 2:
-                newPanel = createSecAccountDetailPanel(Account.SECURITIES_ACCOUNT);
+                loader.load(panel, () -> getSecAccountData(Account.SECURITIES_ACCOUNT), this::createSecAccountDetailPanel);
                 break;
             case 3:
-                newPanel = createCustomerStockPanel();
+                loader.load(panel, this::getCustomerStockData, this::createCustomerStockPanel);
                 break;
         }
-        if (newPanel != null) {
-            panel.add(newPanel);
-        }
-        panel.revalidate();
-        panel.repaint();
     }
 
 
 
-    private JPanel createAccountDetailPanel(int accountType) {
-        JPanel accountDetailPanel = new JPanel(new BorderLayout());
-        JLabel AccLabel = new JLabel("");
-        accountDetailPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        if (accountType == Account.SAVINGS_ACCOUNT) {
-            AccLabel = new JLabel("Saving Account " );
-        } else if(accountType == Account.CHECKINGS_ACCOUNT){
-            AccLabel = new JLabel("Checking Account " );
-        }
-        AccLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        accountDetailPanel.add(AccLabel, BorderLayout.NORTH);
-
+    private String[][] getAccountData(int accountType) {
         List<Account> ls = manager.getAllCustomerAccountType(accountType);
         List<String[]> displayData = new ArrayList<>();
         DecimalFormat df = new DecimalFormat("#.00");
@@ -275,8 +263,20 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
             displayData.add(data);
         }
 
-        String[][] data = displayData.toArray(new String[0][]);
+        return displayData.toArray(new String[0][]);
+    }
 
+    private JPanel createAccountDetailPanel(int accountType, String[][] data) {
+        JPanel accountDetailPanel = new JPanel(new BorderLayout());
+        JLabel AccLabel = new JLabel("");
+        accountDetailPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        if (accountType == Account.SAVINGS_ACCOUNT) {
+            AccLabel = new JLabel("Saving Account " );
+        } else if(accountType == Account.CHECKINGS_ACCOUNT){
+            AccLabel = new JLabel("Checking Account " );
+        }
+        AccLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        accountDetailPanel.add(AccLabel, BorderLayout.NORTH);
 
         String[] columnNames = {"Username", "USD Balance", "RMB Balance", "KRW Balance"};
 
@@ -287,16 +287,7 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
         return accountDetailPanel;
     }
 
-    private JPanel createSecAccountDetailPanel(int accountType) {
-        JPanel secAccountDetailPanel = new JPanel(new BorderLayout());
-        secAccountDetailPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        JLabel secAccLabel = new JLabel("Security Account " );
-        secAccLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        secAccountDetailPanel.add(secAccLabel, BorderLayout.NORTH);
-
-        //
-
+    private String[][] getSecAccountData(int accountType) {
         List<Account> ls = manager.getAllCustomerAccountType(accountType);
         List<String[]> displayData = new ArrayList<>();
         DecimalFormat df = new DecimalFormat("#.00");
@@ -315,9 +306,18 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
                 displayData.add(data);
             }
         }
+        return displayData.toArray(new String[0][]);
+    }
+
+    private JPanel createSecAccountDetailPanel(String[][] data) {
+        JPanel secAccountDetailPanel = new JPanel(new BorderLayout());
+        secAccountDetailPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JLabel secAccLabel = new JLabel("Security Account " );
+        secAccLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        secAccountDetailPanel.add(secAccLabel, BorderLayout.NORTH);
+
         String[] columnNames = {"Username", "Balance", "Unrealized Profit","Realized Profit"};
-        
-        String[][] data = displayData.toArray(new String[0][]);
 
         JTable balanceTable = new JTable(data, columnNames);
         JScrollPane scrollPane = new JScrollPane(balanceTable);
@@ -325,7 +325,22 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
 
         return secAccountDetailPanel;
     }
-    private JPanel createCustomerStockPanel() {
+    private String[][] getCustomerStockData() {
+        // Both come from the holdings StockDatabase keeps in memory
+        List<String[]> data = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<String, Integer>> holding : StockDatabase.getAllHoldings().entrySet()) {
+            for (Map.Entry<String, Integer> stock : holding.getValue().entrySet()) {
+                data.add(new String[]{holding.getKey(), stock.getKey(), String.valueOf(stock.getValue())});
+            }
+        }
+        for (Map.Entry<String, Integer> total : StockDatabase.getTotalShares().entrySet()) {
+            data.add(new String[]{"All Customers", total.getKey(), String.valueOf(total.getValue())});
+        }
+
+        return data.toArray(new String[0][]);
+    }
+
+    private JPanel createCustomerStockPanel(String[][] stockData) {
         JPanel customerStockPanel = new JPanel(new BorderLayout());
         customerStockPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -333,19 +348,8 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
         stockLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
         customerStockPanel.add(stockLabel, BorderLayout.NORTH);
 
-        Set<String> hs = StockDatabase.getAllUsernames();
-        List<String[]> data = new ArrayList<>();
-        for (String username: hs) {
-            List<StockDetails> ls = StockDatabase.getAllStocksFromPortfolio(username);
-            for (StockDetails stockDetails : ls) {
-                data.add(new String[]{username, stockDetails.getName(), String.valueOf(stockDetails.getAmount())});
-            }
-        }
-
         String[] stockColumnNames = {"Username","Stock Name", "Shares Holding"};
 
-        String[][] stockData = data.toArray(new String[0][]);
-
         DefaultTableModel stockModel = new DefaultTableModel(stockData, stockColumnNames);
         JTable stockTable = new JTable(stockModel);
         JScrollPane loanScrollPane = new JScrollPane(stockTable);
@@ -357,83 +361,72 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
     /*----------------------------------------------------Users Data--------------------------------------------------------------*/
 
     /*--------------------------------------------------Transaction Report--------------------------------------------------------------*/
+    private void refreshTransactionReportPanel() {
+        transactionReportPanel.removeAll();
+        transactionReportPanel.add(createTransactionReportPanel());
+        transactionReportPanel.revalidate();
+        transactionReportPanel.repaint();
+    }
+
     private JPanel createTransactionReportPanel() {
         JPanel transactionReportPanel = new JPanel(new BorderLayout());
         transactionReportPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         JLabel titleLabel = new JLabel("Transaction History", JLabel.CENTER);
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
-        transactionReportPanel.add(titleLabel, BorderLayout.NORTH);
 
-        String[] columnNames = {"Date", "Sender", "Sender Account", "Receiver", "Receiver Account", "Amount", "Currency"};
-        String[][] data = getTransactionData();  //get daily transaction data for all customers
+        // Rows are read a page at a time as the table scrolls
+        TransactionTableModel model = new TransactionTableModel();
 
-        DefaultTableModel model = new DefaultTableModel(data, columnNames) {
+        // Filter by customer, done by the transaction log's index
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JTextField usernameField = new JTextField(12);
+        JButton filterButton = new JButton("Filter");
+        filterButton.addActionListener(e -> model.setUsernameFilter(usernameField.getText().trim()));
+        filterPanel.add(new JLabel("Customer:"));
+        filterPanel.add(usernameField);
+        filterPanel.add(filterButton);
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(titleLabel, BorderLayout.NORTH);
+        northPanel.add(filterPanel, BorderLayout.SOUTH);
+        transactionReportPanel.add(northPanel, BorderLayout.NORTH);
+
+        JTable transactionTable = new JTable(model);
+        // Clicking the date header flips between newest and oldest first
+        transactionTable.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                // not editable
-                return false;
+            public void mouseClicked(MouseEvent e) {
+                int column = transactionTable.convertColumnIndexToModel(transactionTable.columnAtPoint(e.getPoint()));
+                if (column == TransactionTableModel.DATE_COLUMN) {
+                    model.setNewestFirst(!model.isNewestFirst());
+                }
             }
-        };
-        JTable transactionTable = new JTable(model);
+        });
         JScrollPane scrollPane = new JScrollPane(transactionTable);
         transactionReportPanel.add(scrollPane, BorderLayout.CENTER);
 
         // Today's cash flow
         JPanel cashFlowPanel = new JPanel();
         cashFlowPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
-        JLabel cashFlowLabel = new JLabel("Today's Cash Flow: " + calculateTodayCashFlow(data));
-        cashFlowLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        cashFlowPanel.add(cashFlowLabel);
+        loader.load(cashFlowPanel, () -> calculateTodayCashFlow(), cashFlow -> {
+            JPanel panel = new JPanel();
+            JLabel cashFlowLabel = new JLabel("Today's Cash Flow: " + cashFlow);
+            cashFlowLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+            panel.add(cashFlowLabel);
+            return panel;
+        });
 
         transactionReportPanel.add(cashFlowPanel, BorderLayout.SOUTH);
 
         return transactionReportPanel;
     }
 
-    private String[][] getTransactionData() {
-        Map<Integer, String> hm = new HashMap<>();
-        hm.put(Account.SAVINGS_ACCOUNT, "Savings");
-        hm.put(Account.CHECKINGS_ACCOUNT, "Checking");
-        hm.put(Account.SECURITIES_ACCOUNT, "Security");
-        hm.put(Manager.MANAGER_ACCOUNT, "Manager Account");
-        hm.put(-1, "N/A");
-        List<Transaction> ls = TransactionDatabase.getAllTransactions();
-        List<String[]> data = new ArrayList<>();
-        for (Transaction transaction : ls) {
-            String sender = transaction.getSender();
-            String receiver = transaction.getReceiver();
-            int senderAccount = transaction.getSenderAccountType();
-            int receiverAccount = transaction.getReceiverAccountType();
-
-            if (sender.equals("")) {
-                sender = "N/A";
-            }
-            if (receiver.equals("")) {
-                receiver = "N/A";
-            }
-            data.add(new String[] {transaction.getDate().toString(), sender, hm.get(senderAccount), receiver, hm.get(receiverAccount),
-                    transaction.getCurrency().getCurrencyTypeString(), String.valueOf(transaction.getCurrency().getAmount())});
-        }
-        return data.toArray(new String[0][]);
-    }
-
-    private String calculateTodayCashFlow(String[][] data) {
-        double cashFlow = 0;
-        LocalDate today = CustomerDatabase.getDate();
-        for (String[] row : data) {
-            LocalDate date = LocalDate.parse(row[0]);
-            if (date.equals(today)) {
-                double amount = Double.parseDouble(row[6]);  //get amount
-                if (row[5].equals("RMB")) {
-                    amount /= 7;
-                } else if (row[5].equals("WON")) {
-                    amount /= 1300;
-                }
-                cashFlow += amount;
-            }
-        }
-        return String.format("%.2f", cashFlow);
+    // Read from the running totals of today, not from the transactions
+    private String calculateTodayCashFlow() {
+        DailyAggregates.Day today = DailyAggregates.getDay(CustomerDatabase.getDate());
+        return String.format("%.2f (%d transactions, fee income %.2f)", Money.toAmount(today.getCashFlow()),
+                today.getCount(), Money.toAmount(today.getFeeIncome()));
     }
     //    /*--------------------------------------------------Transaction Report--------------------------------------------------------------*/
 //
@@ -454,18 +447,21 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
             refreshLoanPanel(selectedPanel, index);
         });
 
-        tabbedPane.addTab("Approval Loans", createApprovalLoanPanel());
-        tabbedPane.addTab("Waiting List Loans", createWaitingListLoanPanel());
+        String[] tabs = {"Approval Loans", "Waiting List Loans"};
+        for (int i = 0; i < tabs.length; i++) {
+            JPanel tab = new JPanel(new BorderLayout());
+            tabbedPane.addTab(tabs[i], tab);
+            refreshLoanPanel(tab, i);
+        }
 
         loanManagementPanel.add(tabbedPane, BorderLayout.CENTER);
 
         return loanManagementPanel;
     }
 
-    private JPanel createApprovalLoanPanel() {
+    private JPanel createApprovalLoanPanel(List<Loan> loan) {
         JPanel approveLoanPanel = new JPanel(new BorderLayout());
         approveLoanPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        List<Loan> loan = LoanDatabase.getAllLoans("Manager", false);
 
         JLabel loanLabel = new JLabel("Loan and Collateral " );
         loanLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
@@ -488,10 +484,9 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
         return approveLoanPanel;
     }
 
-    private JPanel createWaitingListLoanPanel() {
+    private JPanel createWaitingListLoanPanel(List<Loan> loan) {
         JPanel waitingListLoanPanel = new JPanel(new BorderLayout());
         waitingListLoanPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        List<Loan> loan = manager.getPendingLoans();
 
         String[] columnNames = {"Username","Collateral Type", "Collateral Value", "Loan Amount"};
         List<String[]> ls = new ArrayList<>();
@@ -583,21 +578,14 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
     }
 
     private void refreshLoanPanel(JPanel panel, int index) {
-        panel.removeAll();
-        JPanel newPanel = null;
         switch (index) {
             case 0:
-                newPanel = createApprovalLoanPanel();
+                loader.load(panel, () -> LoanDatabase.getAllLoans("Manager", false), this::createApprovalLoanPanel);
                 break;
             case 1:
-                newPanel = createWaitingListLoanPanel();
+                loader.load(panel, manager::getPendingLoans, this::createWaitingListLoanPanel);
                 break;
         }
-        if (newPanel != null) {
-            panel.add(newPanel);
-        }
-        panel.revalidate();
-        panel.repaint();
     }
 
     //    /*----------------------------------------------------Loan Management--------------------------------------------------------------*/
@@ -734,6 +722,10 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
 
         panel.add(southPanel, BorderLayout.SOUTH);
 
+        // Shown again whenever the page is opened
+        JLabel metricsLabel = new JLabel("Notifications: " + manager.getStockEventMetrics(), JLabel.CENTER);
+        panel.add(metricsLabel, BorderLayout.NORTH);
+
         return panel;
     }
 
@@ -782,10 +774,43 @@ public class ManagerPortfolio extends JFrame implements ButtonObserver {
 
         timeSettingPanel.add(dateLabel);
         timeSettingPanel.add(buttonPanel);
+        timeSettingPanel.add(createExchangeRatePanel());
 
         return timeSettingPanel;
     }
 
+    // How many yuan or won one dollar buys, the dollar itself stays at 1
+    private JPanel createExchangeRatePanel() {
+        JPanel exchangeRatePanel = new JPanel(new FlowLayout());
+
+        Map<String, Integer> currencyHm = new HashMap<>();
+        currencyHm.put("Yuan", Currency.YUAN);
+        currencyHm.put("Won", Currency.WON);
+        JComboBox<String> currencySelector = new JComboBox<>(new String[]{"Yuan", "Won"});
+        JTextField rateField = new JTextField(String.valueOf(ExchangeRates.getUnitsPerDollar(Currency.YUAN)), 10);
+        currencySelector.addActionListener(e -> {
+            int currencyType = currencyHm.get((String) currencySelector.getSelectedItem());
+            rateField.setText(String.valueOf(ExchangeRates.getUnitsPerDollar(currencyType)));
+        });
+
+        JButton updateRateButton = new JButton("Update Rate");
+        updateRateButton.addActionListener(e -> {
+            int currencyType = currencyHm.get((String) currencySelector.getSelectedItem());
+            double unitsPerDollar = tryParse(rateField.getText());
+            if (unitsPerDollar > 0 && manager.updateExchangeRate(currencyType, unitsPerDollar)) {
+                JOptionPane.showMessageDialog(this, "Exchange rate updated successfully.", "Update Successful", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Invalid exchange rate entered.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        exchangeRatePanel.add(new JLabel("1 USD ="));
+        exchangeRatePanel.add(rateField);
+        exchangeRatePanel.add(currencySelector);
+        exchangeRatePanel.add(updateRateButton);
+        return exchangeRatePanel;
+    }
+
     public void updateDateDisplay() {
         dateLabel.setText(CustomerDatabase.getDate().toString());
         dateLabel.revalidate();
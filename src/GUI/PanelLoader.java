@@ -0,0 +1,72 @@
+ /*
+  * PanelLoader.java
+  *
+  * Fills panels without blocking the Swing thread. The data behind a panel is
+  * fetched by a SwingWorker while the panel shows a loading message, and the
+  * panel is rebuilt from the fetched data once it arrives. Starting a newer
+  * load of the same panel cancels the older one, so a slow, superseded fetch
+  * can never overwrite fresher data.
+  */
+
+package GUI;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+public class PanelLoader {
+    // panel -> its newest load, only touched on the Swing thread
+    private final Map<JPanel, SwingWorker<?, ?>> running = new WeakHashMap<>();
+
+    // Shows a loading message in panel, runs fetch in the background and then
+    // replaces the contents of panel with render applied to the result
+    public <T> void load(JPanel panel, Callable<T> fetch, Function<T, JPanel> render) {
+        SwingWorker<?, ?> previous = running.get(panel);
+        if (previous != null) {
+            // Not interrupted: the fetch may be in the middle of reading a CSV file,
+            // its result is simply thrown away
+            previous.cancel(false);
+        }
+        show(panel, createMessageLabel("Loading..."));
+
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return fetch.call();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || running.get(panel) != this) {
+                    return;
+                }
+                running.remove(panel);
+                try {
+                    show(panel, render.apply(get()));
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    show(panel, createMessageLabel("Failed to load data."));
+                }
+            }
+        };
+        running.put(panel, worker);
+        worker.execute();
+    }
+
+    private static void show(JPanel panel, JComponent content) {
+        panel.removeAll();
+        panel.add(content);
+        panel.revalidate();
+        panel.repaint();
+    }
+
+    private static JLabel createMessageLabel(String text) {
+        JLabel label = new JLabel(text, JLabel.CENTER);
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 18));
+        return label;
+    }
+}
@@ -0,0 +1,186 @@
+ /*
+  * TransactionTableModel.java
+  *
+  * Table model for the manager's transaction report that never holds the
+  * whole history. The transaction log selects the rows to show (one
+  * customer or everyone, oldest or newest first) without reading them,
+  * and the model reads them a page at a time in the background as the
+  * table scrolls to them. Only the most recently shown pages are kept.
+  */
+
+package GUI;
+
+import src.*;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+public class TransactionTableModel extends AbstractTableModel {
+    public static final int DATE_COLUMN = 0;
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 20;
+    private static final String[] COLUMN_NAMES = {"Date", "Sender", "Sender Account", "Receiver", "Receiver Account", "Amount", "Currency"};
+    private static final Map<Integer, String> ACCOUNT_NAMES = new HashMap<>();
+
+    static {
+        ACCOUNT_NAMES.put(Account.SAVINGS_ACCOUNT, "Savings");
+        ACCOUNT_NAMES.put(Account.CHECKINGS_ACCOUNT, "Checking");
+        ACCOUNT_NAMES.put(Account.SECURITIES_ACCOUNT, "Security");
+        ACCOUNT_NAMES.put(Manager.MANAGER_ACCOUNT, "Manager Account");
+        ACCOUNT_NAMES.put(-1, "N/A");
+    }
+
+    private TransactionLog.Selection selection;
+    private String username = null;
+    private boolean newestFirst = true;
+    // Bumped on every new selection so pages of an older one are dropped
+    private int generation = 0;
+    // page number -> rows, least recently shown first
+    private final Map<Integer, String[][]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    public TransactionTableModel() {
+        reload();
+    }
+
+    // Shows only the transactions of username, or everyone's when it is null or empty
+    public void setUsernameFilter(String username) {
+        this.username = username == null || username.isEmpty() ? null : username;
+        reload();
+    }
+
+    public void setNewestFirst(boolean newestFirst) {
+        this.newestFirst = newestFirst;
+        reload();
+    }
+
+    public boolean isNewestFirst() {
+        return newestFirst;
+    }
+
+    // Selects the rows again, e.g. after new transactions were made
+    public void reload() {
+        int current = ++generation;
+        String selectedUsername = username;
+        boolean selectedNewestFirst = newestFirst;
+        new SwingWorker<TransactionLog.Selection, Void>() {
+            @Override
+            protected TransactionLog.Selection doInBackground() {
+                return TransactionDatabase.selectTransactions(selectedUsername, selectedNewestFirst);
+            }
+
+            @Override
+            protected void done() {
+                if (current != generation) {
+                    return;
+                }
+                try {
+                    selection = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    selection = null;
+                }
+                pages.clear();
+                loadingPages.clear();
+                fireTableDataChanged();
+            }
+        }.execute();
+    }
+
+    @Override
+    public int getRowCount() {
+        return selection == null ? 0 : selection.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        // not editable
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        String[][] rows = pages.get(page);
+        if (rows == null) {
+            loadPage(page);
+            return column == DATE_COLUMN ? "Loading..." : "";
+        }
+        int index = row % PAGE_SIZE;
+        return index < rows.length ? rows[index][column] : "";
+    }
+
+    private void loadPage(int page) {
+        if (!loadingPages.add(page)) {
+            return;
+        }
+        int current = generation;
+        TransactionLog.Selection pageSelection = selection;
+        new SwingWorker<String[][], Void>() {
+            @Override
+            protected String[][] doInBackground() {
+                List<Transaction> transactions = TransactionDatabase.getTransactions(pageSelection, page * PAGE_SIZE, PAGE_SIZE);
+                if (transactions == null) {
+                    return new String[0][];
+                }
+                String[][] rows = new String[transactions.size()][];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = toRow(transactions.get(i));
+                }
+                return rows;
+            }
+
+            @Override
+            protected void done() {
+                // A page asked for between a reload and its result still reads the old selection
+                if (current != generation || pageSelection != selection) {
+                    return;
+                }
+                loadingPages.remove(page);
+                try {
+                    pages.put(page, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                int first = page * PAGE_SIZE;
+                int last = Math.min(getRowCount(), first + PAGE_SIZE) - 1;
+                if (first <= last) {
+                    fireTableRowsUpdated(first, last);
+                }
+            }
+        }.execute();
+    }
+
+    // One report row: date, sender, sender account, receiver, receiver account, currency, amount
+    public static String[] toRow(Transaction transaction) {
+        String sender = transaction.getSender();
+        String receiver = transaction.getReceiver();
+        if (sender.equals("")) {
+            sender = "N/A";
+        }
+        if (receiver.equals("")) {
+            receiver = "N/A";
+        }
+        return new String[] {transaction.getDate().toString(), sender, ACCOUNT_NAMES.get(transaction.getSenderAccountType()),
+                receiver, ACCOUNT_NAMES.get(transaction.getReceiverAccountType()),
+                transaction.getCurrency().getCurrencyTypeString(), String.valueOf(transaction.getCurrency().getAmount())};
+    }
+}
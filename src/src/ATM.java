@@ -14,10 +14,12 @@ package src;
 
 import java.util.*;
 public class ATM implements BankInterface {
-    private Bank bank;
+    private BankSession bank;
 
+    // Every ATM is bound to its own session, so logging into one ATM
+    // does not change the customer served by another
     public ATM() {
-        bank = Bank.getSingletonBank();
+        bank = Bank.getSingletonBank().openSession();
     }
 
     // login will be called before all other methods in this class
@@ -75,6 +77,24 @@ public class ATM implements BankInterface {
         return currentBalance;
     }
 
+    // Balances of an account the front end read itself, e.g. in a background
+    // worker that must not use the session
+    public static double[] viewBalance(Account account) {
+        return BankSession.viewBalance(account);
+    }
+
+    public static double[] viewSecBalance(Account account) {
+        return BankSession.viewSecBalance(account);
+    }
+
+    public boolean buyStock(String stock, int amount) {
+        return bank.buyStock(stock, amount);
+    }
+
+    public boolean sellStock(String stock, int amount) {
+        return bank.sellStock(stock, amount);
+    }
+
     public boolean transferAmount(int accountType, int targetAccountType, String targetUsername, Currency amount) {
         return bank.transferAmount(accountType, targetAccountType, targetUsername, amount);
     }
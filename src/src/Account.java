@@ -30,6 +30,10 @@ public abstract class Account {
     protected int accountType; 
     // Balance of all currencies combined in account, based on USD
     protected double balance; 
+    // Each currency converted to US cents, kept up to date as the currency changes.
+    // Converted at ratesVersion and recomputed whenever the exchange rates change
+    private final long[] dollarMinorUnits = new long[ExchangeRates.CURRENCY_COUNT];
+    private long ratesVersion = -1;
 
     // Constructor called by frontend, which uses data grabbed from backend
     // to generate an account
@@ -44,8 +48,11 @@ public abstract class Account {
         return username;
     }
 
+    // O(1) unless exchange rates changed since the balance was last computed
     public double getBalance(){
-        updateBalance();
+        if (ratesVersion != ExchangeRates.getVersion()) {
+            updateBalance();
+        }
         return balance;
     }
 
@@ -71,6 +78,7 @@ public abstract class Account {
                 currency.deposit(currency.getAmount() * Bank.ACCOUNT_INTEREST_RATE);
             }
         }
+        updateBalance();
         CustomerDatabase.updateCustomerAccount(this);
     }
 
@@ -99,7 +107,7 @@ public abstract class Account {
                     TransactionDatabase.createTransaction(new Transaction(money, username, "", accountType, -1));
                 }
             }
-            updateBalance();
+            updateBalance(money.getCurrencyType());
             return result;
         } else {
             return false; // insufficient fund，return false
@@ -114,15 +122,36 @@ public abstract class Account {
             Transaction t = new Transaction(money, "", username, -1, accountType);
             TransactionDatabase.createTransaction(t);
         }
-        updateBalance();
+        updateBalance(money.getCurrencyType());
         return result;
     }
 
-    // helper function for calculating total balance (in USD)
+    // helper function for calculating total balance (in USD).
+    // Converts every currency at the current rates
     private void updateBalance(){
-        this.balance = 0;
+        long version = ExchangeRates.getVersion();
         for (Currency currency : currencies.values()) {
-            this.balance += Currency.exchange(currency, Currency.DOLLARS).getAmount();
+            dollarMinorUnits[currency.getCurrencyType()] = Money.toDollars(currency.getMinorUnits(), currency.getCurrencyType());
+        }
+        ratesVersion = version;
+        sumBalance();
+    }
+
+    // Only currencyType changed, so only that currency is converted again
+    private void updateBalance(int currencyType) {
+        if (ratesVersion != ExchangeRates.getVersion()) {
+            updateBalance();
+            return;
+        }
+        dollarMinorUnits[currencyType] = Money.toDollars(currencies.get(currencyType).getMinorUnits(), currencyType);
+        sumBalance();
+    }
+
+    private void sumBalance() {
+        long total = 0;
+        for (long amount : dollarMinorUnits) {
+            total += amount;
         }
+        this.balance = Money.toAmount(total);
     }
 }
@@ -0,0 +1,179 @@
+/*
+  * AccountIndex.java
+  *
+  * Persistent username -> byte offset index for one account CSV, so a single
+  * account can be read with one seek instead of parsing the whole file.
+  * The index is saved next to the CSV (customerSavings.csv ->
+  * customerSavingsIndex.csv) with the length and modification time of the
+  * CSV it was built from. If the index is missing, or the CSV no longer
+  * matches it, the index is rebuilt with a single scan of the CSV.
+  */
+
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+public class AccountIndex {
+    private static final String HEADER_MARKER = "#";
+    private final String filePath;
+    private final String indexFilePath;
+    // username -> offset, in the order the rows appear in the CSV
+    private LinkedHashMap<String, Long> offsets = new LinkedHashMap<>();
+
+    public AccountIndex(String filePath) {
+        this.filePath = filePath;
+        this.indexFilePath = filePath.replace(".csv", "Index.csv");
+        load();
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public Set<String> getUsernames() {
+        return offsets.keySet();
+    }
+
+    // Returns the parsed CSV row of username or null if the file has no such row
+    public String[] readRow(String username) {
+        Long offset = offsets.get(username);
+        if (offset == null) {
+            return null;
+        }
+        String[] row = readRowAt(offset);
+        if (row != null && row.length > 0 && row[0].equals(username)) {
+            return row;
+        }
+        // The CSV was changed behind our back
+        rebuild();
+        offset = offsets.get(username);
+        return offset == null ? null : readRowAt(offset);
+    }
+
+    // Installs offsets for a freshly written CSV, in its row order, and saves them
+    public void replace(LinkedHashMap<String, Long> newOffsets) {
+        offsets = newOffsets;
+        save();
+    }
+
+    private String[] readRowAt(long offset) {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            if (offset >= file.length()) {
+                return null;
+            }
+            file.seek(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = file.read()) != -1 && b != '\n') {
+                line.write(b);
+            }
+            return parseLine(new String(line.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void load() {
+        File csv = new File(filePath);
+        File index = new File(indexFilePath);
+        if (!csv.exists()) {
+            offsets = new LinkedHashMap<>();
+            return;
+        }
+        if (index.exists()) {
+            try (CSVReader reader = new CSVReader(new FileReader(index))) {
+                String[] header = reader.readNext();
+                if (header != null && header.length == 3 && header[0].equals(HEADER_MARKER)
+                        && Long.parseLong(header[1]) == csv.length()
+                        && Long.parseLong(header[2]) == csv.lastModified()) {
+                    LinkedHashMap<String, Long> loaded = new LinkedHashMap<>();
+                    String[] entry;
+                    while ((entry = reader.readNext()) != null) {
+                        loaded.put(entry[0], Long.parseLong(entry[1]));
+                    }
+                    offsets = loaded;
+                    return;
+                }
+            } catch (IOException | CsvException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        rebuild();
+    }
+
+    // One pass over the CSV recording where each row starts
+    private void rebuild() {
+        LinkedHashMap<String, Long> rebuilt = new LinkedHashMap<>();
+        File csv = new File(filePath);
+        if (csv.exists()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(csv))) {
+                long offset = 0;
+                long lineStart = 0;
+                ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b == '\n') {
+                        addEntry(rebuilt, line, lineStart);
+                        line.reset();
+                        lineStart = offset;
+                    } else {
+                        line.write(b);
+                    }
+                }
+                addEntry(rebuilt, line, lineStart);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        offsets = rebuilt;
+        save();
+    }
+
+    private static void addEntry(Map<String, Long> offsets, ByteArrayOutputStream line, long lineStart) {
+        if (line.size() == 0) {
+            return;
+        }
+        String[] row = parseLine(new String(line.toByteArray(), StandardCharsets.UTF_8));
+        if (row != null && row.length > 0 && !row[0].isEmpty()) {
+            offsets.put(row[0], lineStart);
+        }
+    }
+
+    private void save() {
+        File csv = new File(filePath);
+        try (CSVWriter writer = new CSVWriter(new FileWriter(indexFilePath))) {
+            writer.writeNext(new String[] {HEADER_MARKER, String.valueOf(csv.length()), String.valueOf(csv.lastModified())});
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                writer.writeNext(new String[] {entry.getKey(), String.valueOf(entry.getValue())});
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String[] parseLine(String line) {
+        try (CSVReader reader = new CSVReader(new StringReader(line))) {
+            return reader.readNext();
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
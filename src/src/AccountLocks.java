@@ -0,0 +1,58 @@
+/*
+  * AccountLocks.java
+  *
+  * Striped locks guarding the balance of one account, keyed by
+  * (username, accountType). A withdraw checks the balance and then changes
+  * it, so two sessions working on the same account must not interleave, while
+  * sessions on unrelated accounts should not wait on each other. Accounts are
+  * hashed onto a fixed set of reentrant locks. A transfer takes the locks of
+  * both accounts, always in stripe order, so two opposite transfers between
+  * the same accounts cannot deadlock.
+  */
+
+package src;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AccountLocks {
+    private static final int STRIPES = 64;
+    private static final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public static void lock(String username, int accountType) {
+        locks[stripe(username, accountType)].lock();
+    }
+
+    public static void unlock(String username, int accountType) {
+        locks[stripe(username, accountType)].unlock();
+    }
+
+    // Locks both accounts, lower stripe first. Both accounts may share a stripe
+    public static void lock(String username, int accountType, String otherUsername, int otherAccountType) {
+        int first = stripe(username, accountType);
+        int second = stripe(otherUsername, otherAccountType);
+        locks[Math.min(first, second)].lock();
+        if (first != second) {
+            locks[Math.max(first, second)].lock();
+        }
+    }
+
+    public static void unlock(String username, int accountType, String otherUsername, int otherAccountType) {
+        int first = stripe(username, accountType);
+        int second = stripe(otherUsername, otherAccountType);
+        if (first != second) {
+            locks[Math.max(first, second)].unlock();
+        }
+        locks[Math.min(first, second)].unlock();
+    }
+
+    private static int stripe(String username, int accountType) {
+        return Math.floorMod(Objects.hash(username, accountType), STRIPES);
+    }
+}
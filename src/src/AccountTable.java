@@ -0,0 +1,633 @@
+/*
+  * AccountTable.java
+  *
+  * Resident table of customer accounts (username -> balances) so that
+  * deposits and withdrawals no longer have to read and rewrite a whole CSV.
+  * Every mutation is first appended to a write-ahead log (one line, constant
+  * cost), then applied to the table. A background thread periodically
+  * checkpoints the changed rows back into the existing account CSVs and
+  * throws away the part of the log that has been checkpointed.
+  *
+  * Rows are loaded on demand: an AccountIndex per CSV knows where each
+  * username's row starts, so a lookup is one seek rather than a full parse.
+  * The checkpoint rewrites the index together with the CSV. Listing every
+  * account of a type reads its CSV once; from then on all of its rows are
+  * resident and kept current by the mutations, so later listings are served
+  * from memory.
+  *
+  * Log records are after-images of the whole row rather than deltas, so
+  * replaying a record twice (e.g. a crash in the middle of a checkpoint)
+  * always produces the same row.
+  */
+
+package src;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+public class AccountTable {
+    public static final String ACCOUNT_WAL_CSV_FILEPATH = "accountWal.csv";
+    // Log segment that is currently being checkpointed
+    public static final String ACCOUNT_WAL_CHECKPOINT_CSV_FILEPATH = "accountWal.checkpoint.csv";
+    private static final String CLOSED_MARKER = "CLOSED";
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 5;
+    private static final int[] ACCOUNT_TYPES = {Account.SAVINGS_ACCOUNT, Account.CHECKINGS_ACCOUNT, Account.SECURITIES_ACCOUNT};
+
+    // One row of an account CSV. enabled is only meaningful for security accounts,
+    // closed marks an account that was closed but is still in the CSV.
+    // Amounts are in minor units, see Money.java
+    private static class Row {
+        long[] amounts = new long[3];
+        boolean enabled = true;
+        boolean closed = false;
+
+        Row copy() {
+            Row row = new Row();
+            row.amounts = Arrays.copyOf(amounts, amounts.length);
+            row.enabled = enabled;
+            return row;
+        }
+    }
+
+    private static final Object lock = new Object();
+    // Serializes checkpoints, never held while lock is waited on by a mutation
+    private static final Object checkpointLock = new Object();
+    // accountType -> index over the checkpointed CSV
+    private static Map<Integer, AccountIndex> indexes;
+    // accountType -> (username -> row) for every row read or changed so far
+    private static Map<Integer, Map<String, Row>> rows;
+    // Account types whose every row is in rows
+    private static Set<Integer> resident;
+    // accountType -> (username -> row) changed since the last checkpoint
+    private static Map<Integer, LinkedHashMap<String, Row>> dirtyRows;
+    private static CSVWriter walWriter;
+    private static boolean dirty = false;
+    private static ScheduledExecutorService checkpointer;
+
+    public static boolean exists(int accountType, String username) {
+        synchronized (lock) {
+            ensureLoaded();
+            return getRow(accountType, username) != null;
+        }
+    }
+
+    // Returns {usd, yuan, won} or null if the account doesn't exist
+    public static double[] getBalances(int accountType, String username) {
+        long[] minorUnits = getMinorBalances(accountType, username);
+        if (minorUnits == null) {
+            return null;
+        }
+        double[] amounts = new double[minorUnits.length];
+        for (int i = 0; i < minorUnits.length; i++) {
+            amounts[i] = Money.toAmount(minorUnits[i]);
+        }
+        return amounts;
+    }
+
+    // Same as getBalances, in minor units
+    public static long[] getMinorBalances(int accountType, String username) {
+        synchronized (lock) {
+            ensureLoaded();
+            Row row = getRow(accountType, username);
+            if (row == null) {
+                return null;
+            }
+            return Arrays.copyOf(row.amounts, row.amounts.length);
+        }
+    }
+
+    public static boolean isEnabled(String username) {
+        synchronized (lock) {
+            ensureLoaded();
+            Row row = getRow(Account.SECURITIES_ACCOUNT, username);
+            return row != null && row.enabled;
+        }
+    }
+
+    public static List<String> getUsernames(int accountType) {
+        synchronized (lock) {
+            ensureLoaded();
+            AccountIndex index = indexes.get(accountType);
+            if (index == null) {
+                return new ArrayList<>();
+            }
+            Set<String> usernames = new LinkedHashSet<>(index.getUsernames());
+            for (Map.Entry<String, Row> entry : rows.get(accountType).entrySet()) {
+                if (entry.getValue().closed) {
+                    usernames.remove(entry.getKey());
+                } else {
+                    usernames.add(entry.getKey());
+                }
+            }
+            return new ArrayList<>(usernames);
+        }
+    }
+
+    public static boolean createAccount(int accountType, String username, double[] amounts) {
+        return createAccount(accountType, username, toMinorUnits(amounts));
+    }
+
+    public static boolean createAccount(int accountType, String username, long[] amounts) {
+        synchronized (lock) {
+            ensureLoaded();
+            if (!indexes.containsKey(accountType) || getRow(accountType, username) != null) {
+                return false;
+            }
+            Row row = new Row();
+            row.amounts = Arrays.copyOf(amounts, 3);
+            return apply(accountType, username, row);
+        }
+    }
+
+    public static boolean closeAccount(int accountType, String username) {
+        synchronized (lock) {
+            ensureLoaded();
+            if (getRow(accountType, username) == null) {
+                return false;
+            }
+            Row tombstone = new Row();
+            tombstone.closed = true;
+            return apply(accountType, username, tombstone);
+        }
+    }
+
+    public static boolean addToBalance(int accountType, String username, int currencyType, double amount) {
+        return addMinorUnits(accountType, username, currencyType, Money.toMinorUnits(amount));
+    }
+
+    public static boolean addMinorUnits(int accountType, String username, int currencyType, long amount) {
+        synchronized (lock) {
+            ensureLoaded();
+            Row row = getRow(accountType, username);
+            if (row == null || currencyType < 0 || currencyType >= row.amounts.length) {
+                return false;
+            }
+            Row updated = row.copy();
+            updated.amounts[currencyType] += amount;
+            return apply(accountType, username, updated);
+        }
+    }
+
+    public static boolean setBalances(int accountType, String username, double[] amounts) {
+        return setBalances(accountType, username, toMinorUnits(amounts));
+    }
+
+    public static boolean setBalances(int accountType, String username, long[] amounts) {
+        synchronized (lock) {
+            ensureLoaded();
+            Row row = getRow(accountType, username);
+            if (row == null) {
+                return false;
+            }
+            Row updated = row.copy();
+            updated.amounts = Arrays.copyOf(amounts, 3);
+            return apply(accountType, username, updated);
+        }
+    }
+
+    // Adds {usd, yuan, won} minor units to many rows at once. All log records
+    // are written with a single flush. Returns the usernames whose rows were
+    // updated, in the order given (missing or closed accounts are skipped).
+    public static Set<String> addToBalances(int accountType, Map<String, long[]> amounts) {
+        synchronized (lock) {
+            ensureLoaded();
+            Set<String> updated = new LinkedHashSet<>();
+            try {
+                for (Map.Entry<String, long[]> entry : amounts.entrySet()) {
+                    Row row = getRow(accountType, entry.getKey());
+                    if (row == null) {
+                        continue;
+                    }
+                    Row updatedRow = row.copy();
+                    for (int i = 0; i < updatedRow.amounts.length && i < entry.getValue().length; i++) {
+                        updatedRow.amounts[i] += entry.getValue()[i];
+                    }
+                    if (!log(accountType, entry.getKey(), updatedRow, false)) {
+                        break;
+                    }
+                    rows.get(accountType).put(entry.getKey(), updatedRow);
+                    dirtyRows.get(accountType).put(entry.getKey(), updatedRow);
+                    updated.add(entry.getKey());
+                }
+            } finally {
+                flushLog();
+            }
+            return updated;
+        }
+    }
+
+    // Every account of accountType (username -> {usd, yuan, won} in minor units).
+    // Only the first call reads the CSV, later ones are one pass over the resident rows
+    public static LinkedHashMap<String, long[]> getAllBalances(int accountType) {
+        synchronized (lock) {
+            ensureLoaded();
+            LinkedHashMap<String, long[]> balances = new LinkedHashMap<>();
+            if (!makeResident(accountType)) {
+                return balances;
+            }
+            for (Map.Entry<String, Row> entry : rows.get(accountType).entrySet()) {
+                if (!entry.getValue().closed) {
+                    balances.put(entry.getKey(), Arrays.copyOf(entry.getValue().amounts, entry.getValue().amounts.length));
+                }
+            }
+            return balances;
+        }
+    }
+
+    // Reads the rows of accountType that are not resident yet with one pass over
+    // the CSV. Rows are kept in CSV order, followed by accounts that are not
+    // checkpointed yet. Returns false for an unknown account type
+    private static boolean makeResident(int accountType) {
+        AccountIndex index = indexes.get(accountType);
+        if (index == null) {
+            return false;
+        }
+        if (resident.contains(accountType)) {
+            return true;
+        }
+        Map<String, Row> cached = rows.get(accountType);
+        Map<String, Row> ordered = new LinkedHashMap<>();
+        if (new File(index.getFilePath()).exists()) {
+            try (CSVReader reader = new CSVReader(new FileReader(index.getFilePath()))) {
+                String[] account;
+                while ((account = reader.readNext()) != null) {
+                    if (account.length < 4) {
+                        continue;
+                    }
+                    Row row = cached.get(account[0]);
+                    ordered.put(account[0], row != null ? row : fromCsvRow(account, 1));
+                }
+            } catch (IOException | CsvException e) {
+                e.printStackTrace();
+                return true;
+            }
+        }
+        for (Map.Entry<String, Row> entry : cached.entrySet()) {
+            ordered.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        rows.put(accountType, ordered);
+        resident.add(accountType);
+        return true;
+    }
+
+    public static boolean setEnabled(String username, boolean enabled) {
+        synchronized (lock) {
+            ensureLoaded();
+            Row row = getRow(Account.SECURITIES_ACCOUNT, username);
+            if (row == null) {
+                return false;
+            }
+            Row updated = row.copy();
+            updated.enabled = enabled;
+            return apply(Account.SECURITIES_ACCOUNT, username, updated);
+        }
+    }
+
+    // Merges the rows changed since the last checkpoint into the account CSVs
+    // and their indexes. Mutations keep going to a fresh log while the files
+    // are being written.
+    public static void checkpoint() {
+        synchronized (checkpointLock) {
+            Map<Integer, LinkedHashMap<String, Row>> snapshot;
+            synchronized (lock) {
+                if (indexes == null || !dirty) {
+                    return;
+                }
+                if (!rotateLog()) {
+                    return;
+                }
+                snapshot = dirtyRows;
+                dirtyRows = newDirtyRows();
+                dirty = false;
+            }
+
+            for (int accountType : ACCOUNT_TYPES) {
+                LinkedHashMap<String, Row> changed = snapshot.get(accountType);
+                if (changed.isEmpty()) {
+                    continue;
+                }
+                if (!merge(accountType, changed)) {
+                    // Leave the checkpoint log in place, it is replayed on the next start
+                    synchronized (lock) {
+                        for (int type : ACCOUNT_TYPES) {
+                            for (Map.Entry<String, Row> entry : snapshot.get(type).entrySet()) {
+                                dirtyRows.get(type).putIfAbsent(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        dirty = true;
+                    }
+                    return;
+                }
+            }
+            try {
+                Files.deleteIfExists(Paths.get(ACCOUNT_WAL_CHECKPOINT_CSV_FILEPATH));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Streams the CSV once, swapping in changed rows, dropping closed ones and
+    // appending new ones, while recording the offset of every row written
+    private static boolean merge(int accountType, LinkedHashMap<String, Row> changed) {
+        AccountIndex index = indexes.get(accountType);
+        String filePath = index.getFilePath();
+        File tmp = new File(filePath + ".tmp");
+        LinkedHashMap<String, Long> offsets = new LinkedHashMap<>();
+        Set<String> written = new HashSet<>();
+        StringWriter buffer = new StringWriter();
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+                CSVWriter formatter = new CSVWriter(buffer)) {
+            long offset = 0;
+            if (new File(filePath).exists()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty()) {
+                            continue;
+                        }
+                        String username = parseUsername(line);
+                        Row row = changed.get(username);
+                        byte[] bytes;
+                        if (row == null) {
+                            bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                        } else {
+                            written.add(username);
+                            if (row.closed) {
+                                continue;
+                            }
+                            bytes = format(formatter, buffer, toCsvRow(accountType, username, row));
+                        }
+                        offsets.put(username, offset);
+                        out.write(bytes);
+                        offset += bytes.length;
+                    }
+                }
+            }
+            for (Map.Entry<String, Row> entry : changed.entrySet()) {
+                if (written.contains(entry.getKey()) || entry.getValue().closed) {
+                    continue;
+                }
+                byte[] bytes = format(formatter, buffer, toCsvRow(accountType, entry.getKey(), entry.getValue()));
+                offsets.put(entry.getKey(), offset);
+                out.write(bytes);
+                offset += bytes.length;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        synchronized (lock) {
+            try {
+                Files.move(tmp.toPath(), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            index.replace(offsets);
+            // Closed accounts are gone from the CSV now, so their tombstones can go too
+            Map<String, Row> cached = rows.get(accountType);
+            for (Map.Entry<String, Row> entry : changed.entrySet()) {
+                if (entry.getValue().closed && cached.get(entry.getKey()) == entry.getValue()) {
+                    cached.remove(entry.getKey());
+                }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] format(CSVWriter formatter, StringWriter buffer, String[] row) throws IOException {
+        buffer.getBuffer().setLength(0);
+        formatter.writeNext(row);
+        formatter.flush();
+        return buffer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String parseUsername(String line) {
+        try (CSVReader reader = new CSVReader(new StringReader(line))) {
+            String[] row = reader.readNext();
+            return row == null ? "" : row[0];
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return "";
+        }
+    }
+
+    // Looks in the resident rows first and falls back to a single seek in the CSV
+    private static Row getRow(int accountType, String username) {
+        Map<String, Row> cached = rows.get(accountType);
+        if (cached == null) {
+            return null;
+        }
+        Row row = cached.get(username);
+        if (row == null) {
+            if (resident.contains(accountType)) {
+                return null;
+            }
+            String[] account = indexes.get(accountType).readRow(username);
+            if (account == null || account.length < 4) {
+                return null;
+            }
+            row = fromCsvRow(account, 1);
+            cached.put(username, row);
+        }
+        return row.closed ? null : row;
+    }
+
+    private static boolean apply(int accountType, String username, Row updated) {
+        if (!log(accountType, username, updated)) {
+            return false;
+        }
+        rows.get(accountType).put(username, updated);
+        dirtyRows.get(accountType).put(username, updated);
+        return true;
+    }
+
+    private static boolean log(int accountType, String username, Row row) {
+        return log(accountType, username, row, true);
+    }
+
+    // Appends an after-image of the row (or a close marker)
+    private static boolean log(int accountType, String username, Row row, boolean flush) {
+        String[] record;
+        if (row.closed) {
+            record = new String[] {String.valueOf(accountType), username, CLOSED_MARKER};
+        } else {
+            String[] csvRow = toCsvRow(accountType, username, row);
+            record = new String[csvRow.length + 1];
+            record[0] = String.valueOf(accountType);
+            System.arraycopy(csvRow, 0, record, 1, csvRow.length);
+        }
+        try {
+            if (walWriter == null) {
+                walWriter = new CSVWriter(new FileWriter(ACCOUNT_WAL_CSV_FILEPATH, true));
+            }
+            walWriter.writeNext(record);
+            if (flush) {
+                walWriter.flush();
+            }
+            dirty = true;
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static void flushLog() {
+        if (walWriter == null) {
+            return;
+        }
+        try {
+            walWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Moves the current log aside so it can be deleted once the checkpoint is on disk
+    private static boolean rotateLog() {
+        try {
+            if (walWriter != null) {
+                walWriter.close();
+                walWriter = null;
+            }
+            Path wal = Paths.get(ACCOUNT_WAL_CSV_FILEPATH);
+            Path checkpointWal = Paths.get(ACCOUNT_WAL_CHECKPOINT_CSV_FILEPATH);
+            if (!Files.exists(wal)) {
+                return true;
+            }
+            if (Files.exists(checkpointWal)) {
+                // A previous checkpoint failed, keep its records ahead of ours
+                Files.write(checkpointWal, Files.readAllBytes(wal), StandardOpenOption.APPEND);
+                Files.delete(wal);
+            } else {
+                Files.move(wal, checkpointWal, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static String[] toCsvRow(int accountType, String username, Row row) {
+        if (accountType == Account.SECURITIES_ACCOUNT) {
+            return new String[] {username, Money.format(row.amounts[0]), Money.format(row.amounts[1]),
+                Money.format(row.amounts[2]), String.valueOf(row.enabled)};
+        }
+        return new String[] {username, Money.format(row.amounts[0]), Money.format(row.amounts[1]),
+            Money.format(row.amounts[2])};
+    }
+
+    private static Row fromCsvRow(String[] account, int offset) {
+        Row row = new Row();
+        for (int i = 0; i < 3; i++) {
+            row.amounts[i] = Money.parse(account[offset + i]);
+        }
+        if (account.length > offset + 3) {
+            row.enabled = Boolean.valueOf(account[offset + 3]);
+        }
+        return row;
+    }
+
+    private static long[] toMinorUnits(double[] amounts) {
+        long[] minorUnits = new long[3];
+        for (int i = 0; i < minorUnits.length && i < amounts.length; i++) {
+            minorUnits[i] = Money.toMinorUnits(amounts[i]);
+        }
+        return minorUnits;
+    }
+
+    private static Map<Integer, LinkedHashMap<String, Row>> newDirtyRows() {
+        Map<Integer, LinkedHashMap<String, Row>> map = new HashMap<>();
+        for (int accountType : ACCOUNT_TYPES) {
+            map.put(accountType, new LinkedHashMap<>());
+        }
+        return map;
+    }
+
+    // Opens the index of every account CSV, then replays whatever the log has on top of them
+    private static void ensureLoaded() {
+        if (indexes != null) {
+            return;
+        }
+        indexes = new HashMap<>();
+        rows = new HashMap<>();
+        resident = new HashSet<>();
+        for (int accountType : ACCOUNT_TYPES) {
+            indexes.put(accountType, new AccountIndex(CustomerDatabase.getFilePath(accountType)));
+            rows.put(accountType, new LinkedHashMap<>());
+        }
+        dirtyRows = newDirtyRows();
+        replay(ACCOUNT_WAL_CHECKPOINT_CSV_FILEPATH);
+        replay(ACCOUNT_WAL_CSV_FILEPATH);
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "account-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(AccountTable::checkpoint,
+                CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(AccountTable::checkpoint));
+    }
+
+    private static void replay(String filePath) {
+        if (!new File(filePath).exists()) {
+            return;
+        }
+        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                if (record.length < 3) {
+                    continue;
+                }
+                int accountType = Integer.parseInt(record[0]);
+                if (!rows.containsKey(accountType)) {
+                    continue;
+                }
+                Row row;
+                if (record[2].equals(CLOSED_MARKER)) {
+                    row = new Row();
+                    row.closed = true;
+                } else {
+                    row = fromCsvRow(record, 2);
+                }
+                rows.get(accountType).put(record[1], row);
+                dirtyRows.get(accountType).put(record[1], row);
+                dirty = true;
+            }
+        } catch (IOException | CsvException | NumberFormatException e) {
+            // A torn last line from a crash is expected, everything before it is kept
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+  * BankClock.java
+  *
+  * Holds the simulated date of the bank in memory. date.txt is read once,
+  * the first time the date is needed, and only written when the manager
+  * moves the date forward. Creating a transaction therefore never touches
+  * the file system just to learn what day it is.
+  */
+
+package src;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+public class BankClock {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static volatile LocalDate date;
+
+    public static LocalDate getDate() {
+        LocalDate current = date;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    public static synchronized LocalDate increaseDateByDay() {
+        return setDate(getDate().plusDays(1));
+    }
+
+    public static synchronized LocalDate increaseDateByMonth() {
+        return setDate(getDate().plusMonths(1));
+    }
+
+    private static LocalDate setDate(LocalDate updatedDate) {
+        try {
+            Files.write(Paths.get(CustomerDatabase.DATE_TXT_FILEPATH), updatedDate.format(FORMATTER).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("An error occurred while reading/writing the date file.");
+            e.printStackTrace();
+        }
+        date = updatedDate;
+        return updatedDate;
+    }
+
+    private static synchronized LocalDate load() {
+        if (date != null) {
+            return date;
+        }
+        Path filePath = Paths.get(CustomerDatabase.DATE_TXT_FILEPATH);
+        try {
+            if (Files.exists(filePath)) {
+                byte[] bytes = Files.readAllBytes(filePath);
+                String dateString = new String(bytes, StandardCharsets.UTF_8).trim();
+                date = LocalDate.parse(dateString, FORMATTER);
+            } else {
+                date = LocalDate.now();
+                Files.write(filePath, date.format(FORMATTER).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred while reading/writing the date file.");
+            e.printStackTrace();
+            if (date == null) {
+                date = LocalDate.now();
+            }
+        }
+        return date;
+    }
+}
@@ -4,7 +4,7 @@
   * 5/2/2024
   *
   * Uses Proxy pattern, this interface ensures that all methods supported by
-  * ATM are properly implemented into Bank as well.
+  * ATM are properly implemented into BankSession as well.
   */
 
 package src;
@@ -23,5 +23,7 @@ public interface BankInterface {
     boolean payLoan(String collateral, int accountType, int currencyType);
     double[] viewCurrentSecBalance(int accountType);
     boolean transferAmount(int accountType, int targetAccountType, String targetUsername, Currency amount);
+    boolean buyStock(String stock, int amount);
+    boolean sellStock(String stock, int amount);
     Account getBankAccount(int accountType);
 }
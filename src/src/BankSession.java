@@ -0,0 +1,393 @@
+/*
+  * BankSession.java
+  *
+  * Uses Proxy pattern, where the front end will only have an instance of
+  * ATM and never an instance of the actual bank. Every ATM opens its own
+  * session from the singleton Bank and the session holds the customer that
+  * logged into that ATM. All methods in this class are called by ATM.java
+  * and never called from the front-end. Sessions share nothing but the
+  * databases underneath, so two ATMs can serve two customers concurrently.
+  */
+
+package src;
+import java.util.*;
+
+public class BankSession implements BankInterface {
+    private final Manager manager;
+    private Customer currentCustomer = null;
+
+    BankSession(Bank bank) {
+        this.manager = bank.getManager();
+    }
+
+    // As mentioned in ATM.java, login will always be called first
+    // and all other methods assumes a currentCustomer is assigned to the session
+    public void login(User user) {
+        if (user instanceof Customer) {
+            currentCustomer = (Customer) user;
+        }
+    }
+
+    public Account getBankAccount(int accountType) {
+        currentCustomer = CustomerDatabase.getCustomer(currentCustomer.getUsername());
+        return currentCustomer.getBankAccount(accountType);
+    }
+
+    public Customer getCurrentCustomer() {
+        return currentCustomer;
+    }
+
+    public String getUsername() {
+        if (currentCustomer != null) {
+            return currentCustomer.getUsername();
+        }
+        return "[DEBUG]: BankSession.java";
+    }
+
+    // Differs from Currency.exchange() as Currency.exchange() is simply
+    // a helper function to convert Currency, meanwhile Bank.java manages
+    // all backend book-keeping and account updating
+    public Currency exchangeCurrency(int accountType, Currency existingCurrency, int targetCurrencyType) {
+        int existingCurrencyType = existingCurrency.getCurrencyType();
+        // if user attempts to exchange to the same currency
+        if (existingCurrencyType == targetCurrencyType) {
+            return null;
+        }
+        if (existingCurrency.getCurrencyType() == Currency.INVALID) {
+            return null;
+        }
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, accountType);
+        try {
+            Account account = getBankAccount(accountType);
+            if (account.withdraw(username, existingCurrency, true)) {
+                Currency exchangedCurrency = Currency.exchange(existingCurrency, targetCurrencyType);
+                account.deposit(username, exchangedCurrency, true);
+                return exchangedCurrency;
+            } else {
+                return null;
+            }
+        } finally {
+            AccountLocks.unlock(username, accountType);
+        }
+    }
+
+    // Different negative number represents different errors. -1 is an unnaccounted for error
+    // Opening a security account moves money out of savings, so both accounts are locked
+    public int createBankAccount(int accountType, Currency currency) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, accountType, username, Account.SAVINGS_ACCOUNT);
+        try {
+            currentCustomer = CustomerDatabase.getCustomer(username);
+            return openAccount(accountType, currency);
+        } finally {
+            AccountLocks.unlock(username, accountType, username, Account.SAVINGS_ACCOUNT);
+        }
+    }
+
+    private int openAccount(int accountType, Currency currency) {
+        if (currentCustomer == null) {
+            System.out.println("[Debug]: Current customer is null");
+        }
+        if (currency.getAmount() < Bank.ACCOUNT_CREATION_DELETION_COST) {
+            return -6;
+        }
+        if (currentCustomer.getBankAccount(accountType) == null) {
+            if (accountType == Account.CHECKINGS_ACCOUNT) {
+                CustomerDatabase.createCustomerCheckingAccount(currentCustomer.getUsername(), currency);
+            } else if (accountType == Account.SAVINGS_ACCOUNT) {
+                CustomerDatabase.createCustomerSavingsAccount(currentCustomer.getUsername(), currency);
+            } else if (accountType == Account.SECURITIES_ACCOUNT) {
+                double transferAmount = currency.getAmount();
+                // Deposited less than 1000
+                if (transferAmount < SecurityAccount.MIN_DEPOSIT) {
+                    return -2;
+                }
+                // Doesn't have more than 5000 currently in Savings
+                if (viewCurrentBalance(Account.SAVINGS_ACCOUNT)[0] < SecurityAccount.ELIGIBLE_TO_OPEN_SAVINGS_BALANCE ) {
+                    return -3;
+                }
+                // if after transfer, account would be instantly disabled
+                if (viewCurrentBalance(Account.SAVINGS_ACCOUNT)[0] - transferAmount < 2500) {
+                    return -4;
+                }
+                if (viewCurrentBalance(Account.SAVINGS_ACCOUNT)[1] - transferAmount < 0) {
+                    return -7;
+                }
+                CustomerDatabase.createCustomerSecurityAccount(currentCustomer.getUsername(), currency);
+                Account savingsAccount = currentCustomer.getBankAccount(Account.SAVINGS_ACCOUNT);
+                if (savingsAccount == null) {
+                    System.out.println("[Debug]: Savings account is null");
+                    return -5;
+                } else {
+                    // withdraw from savings
+                    savingsAccount.withdraw(getUsername(), currency, true);
+                    // add transfer to security
+                    if (CustomerDatabase.createCustomerSecurityAccount(currentCustomer.getUsername(), currency)) {
+                        currentCustomer = CustomerDatabase.getCustomer(currentCustomer.getUsername());
+                        // add this Customer to the Observer for stock changes
+                        SecurityObserver account = (SecurityObserver)currentCustomer
+                                .getBankAccount(Account.SECURITIES_ACCOUNT);
+                        manager.addObserver(account);
+                        
+                    }
+                    
+                }
+            } else {
+                System.out.println("[Debug]: Not a valid account type!");
+                return -1;
+            }
+            currentCustomer = CustomerDatabase.getCustomer(currentCustomer.getUsername());
+            if (!transferAmount(accountType, Manager.MANAGER_ACCOUNT, manager.getUsername(), new Currency(Bank.ACCOUNT_CREATION_DELETION_COST, Currency.DOLLARS))) {
+                CustomerDatabase.closeAccount(getUsername(), accountType);
+            }
+            currentCustomer = CustomerDatabase.getCustomer(currentCustomer.getUsername());
+
+            return 0;
+        } else {
+            return -1;
+        }
+    }
+    public boolean requestLoan(String collateral, double collateralAmount, double loanAmount) {
+        // Manager will approve or not by their one discretion 
+        List<Loan> approvedLoans = LoanDatabase.getAllLoans(getUsername(), false);
+        List<Loan> notApprovedLoans = LoanDatabase.getAllLoans(getUsername(), true);
+        boolean valid = true;
+        for (Loan l : approvedLoans) {
+            if (l.getCollateral().equals(collateral)) {
+                valid = false;
+            }
+        }
+        for (Loan l : notApprovedLoans) {
+            if (l.getCollateral().equals(collateral)) {
+                valid = false;
+            }
+        }
+        if (valid) {
+            return LoanDatabase.addLoanToBeApproved(currentCustomer.getUsername()
+                , collateral, collateralAmount, loanAmount);
+        } else {
+            return false;
+        }
+    }
+
+    public boolean payLoan(String collateral, int accountType, int currencyType) {
+        Currency payment = CustomerDatabase.getCustomer(currentCustomer.getUsername()).getBankAccount(accountType).getCurrency(currencyType);
+        return LoanDatabase.closeLoan(currentCustomer.getUsername(), collateral, payment);
+    }
+
+    public List<Transaction> viewTransactions(int accountType) {
+        return TransactionDatabase.getTransactionsFromUser(currentCustomer.getUsername(), accountType);
+    }
+    public double[] viewCurrentBalance(int accountType) {
+        return viewBalance(currentCustomer.getBankAccount(accountType));
+    }
+
+    // The same for an account read without a session, account may be null
+    public static double[] viewBalance(Account account) {
+        double[] currentBalance = new double[]{0,0,0,0,-1};
+        if (account != null) {
+            currentBalance[0] = account.getBalance();
+            currentBalance[1] = account.getCurrency(Currency.DOLLARS).getAmount();
+            currentBalance[2] = account.getCurrency(Currency.YUAN).getAmount();
+            currentBalance[3] = account.getCurrency(Currency.WON).getAmount();
+            
+            currentBalance[4] = 0;
+        }
+        
+        return currentBalance;
+    }
+
+    // Separate viewCurrentSecBalance given as they have different structure compared
+    // to Savings and Checkings
+    public double[] viewCurrentSecBalance(int accountType) {
+        return viewSecBalance(currentCustomer.getBankAccount(accountType));
+    }
+
+    public static double[] viewSecBalance(Account account) {
+        double[] currentBalance = new double[]{0,0,0,0,-1};
+        // Last index indicates if in account actually exists.
+        if (account != null) {
+            currentBalance[0] = account.getBalance();
+            currentBalance[1] = account.getCurrency(Currency.DOLLARS).getAmount();
+            currentBalance[2] = ((SecurityAccount)account).getUnrealizedProfits();
+            currentBalance[3] = ((SecurityAccount)account).getStockPortfolioValue();
+            currentBalance[4] = 0;
+        }
+
+        return currentBalance;
+    }
+
+    // Balance checks and updates happen under the account's lock and on a
+    // freshly read account, as another session may have changed it since login
+    public boolean deposit(int accountType, Currency currency, boolean toSelf) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, accountType);
+        try {
+            Account currentCustomerAcc = getBankAccount(accountType);
+            return currentCustomerAcc.deposit(username, currency, toSelf);
+        } finally {
+            AccountLocks.unlock(username, accountType);
+        }
+    } 
+
+    public boolean withdraw(int accountType, Currency currency, boolean toSelf) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, accountType);
+        try {
+            Account currentCustomerAcc = getBankAccount(accountType);
+            return currentCustomerAcc.withdraw(username, currency, toSelf);
+        } finally {
+            AccountLocks.unlock(username, accountType);
+        }
+    } 
+
+    // Holds the locks of both accounts for the whole transfer. The Manager has
+    // no actual account so only the sender is locked when paying the Manager
+    // The balance check and the debit of a purchase happen under the account's lock
+    public boolean buyStock(String stock, int amount) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, Account.SECURITIES_ACCOUNT);
+        try {
+            SecurityAccount account = (SecurityAccount) getBankAccount(Account.SECURITIES_ACCOUNT);
+            return account != null && account.isEnabled() && account.buyStock(stock, amount);
+        } finally {
+            AccountLocks.unlock(username, Account.SECURITIES_ACCOUNT);
+        }
+    }
+
+    // Returns false if the customer holds fewer than amount shares of stock
+    public boolean sellStock(String stock, int amount) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, Account.SECURITIES_ACCOUNT);
+        try {
+            SecurityAccount account = (SecurityAccount) getBankAccount(Account.SECURITIES_ACCOUNT);
+            if (account == null || !account.isEnabled()) {
+                return false;
+            }
+            StockDetails holding = StockDatabase.getStockFromPortfolio(username, stock);
+            if (holding == null || holding.getAmount() < amount) {
+                return false;
+            }
+            account.sellStock(stock, amount);
+            return true;
+        } finally {
+            AccountLocks.unlock(username, Account.SECURITIES_ACCOUNT);
+        }
+    }
+
+    public boolean transferAmount(int accountType, int targetAccountType, String targetUsername, Currency amount) {
+        String username = currentCustomer.getUsername();
+        if (targetAccountType == Manager.MANAGER_ACCOUNT) {
+            AccountLocks.lock(username, accountType);
+            try {
+                return transfer(accountType, targetAccountType, targetUsername, amount);
+            } finally {
+                AccountLocks.unlock(username, accountType);
+            }
+        }
+        AccountLocks.lock(username, accountType, targetUsername, targetAccountType);
+        try {
+            return transfer(accountType, targetAccountType, targetUsername, amount);
+        } finally {
+            AccountLocks.unlock(username, accountType, targetUsername, targetAccountType);
+        }
+    }
+
+    private boolean transfer(int accountType, int targetAccountType, String targetUsername, Currency amount) {
+        Account currentCustomerAcc = getBankAccount(accountType);
+        if (currentCustomerAcc == null) {
+            return false;
+        }
+
+        if (targetAccountType == Manager.MANAGER_ACCOUNT) {
+            // We do not have an actual account for Manager, but to simulate the money being sent to
+            // the manager, we create Manager.MANAGER_ACCOUNT
+            if (currentCustomerAcc.withdraw(currentCustomer.getUsername(), amount, false)) {
+                TransactionDatabase.createTransaction(new Transaction(amount, currentCustomer.getUsername(), "Manager", accountType, targetAccountType));
+                return true;
+            } else {
+                return false;
+            }
+
+        } else {
+            if (accountType == Account.CHECKINGS_ACCOUNT) {
+                double fee = 0;
+                if (amount.getCurrencyType() == Currency.DOLLARS) {
+                    fee += amount.getAmount();
+                }
+                fee += Bank.CHECKING_TRANSACTION_FEE;
+                if (currentCustomerAcc.getCurrency(Currency.DOLLARS).getAmount() > fee) {
+                    if (!transfer(accountType, Manager.MANAGER_ACCOUNT, manager.getUsername(), new Currency(Bank.CHECKING_TRANSACTION_FEE, Currency.DOLLARS))) {
+                        return false;
+                    }
+                    currentCustomerAcc = getBankAccount(accountType);
+                } else {
+                    return false;
+                }
+                
+            }
+            Account targetCustomerAcc = CustomerDatabase.getCustomer(targetUsername).getBankAccount(targetAccountType);
+            if (targetCustomerAcc != null) {
+                // If we have enough money to send
+                if (currentCustomerAcc.withdraw(currentCustomer.getUsername(), amount, false)) {
+                    // if target can receive money (does account exist, did database fail, etc)
+                    if (targetCustomerAcc.deposit(targetUsername, amount, false)) {
+                        
+                        TransactionDatabase.createTransaction(new Transaction(amount, currentCustomer.getUsername(),
+                            targetUsername, accountType, targetAccountType));
+                        return true;
+                    // If target couldn't receive money, deposit back to sender
+                    } else {
+                        currentCustomerAcc.deposit(currentCustomer.getUsername(), amount, false);
+                    }
+                }
+            }
+        }
+        
+        return false;
+    }
+
+    public boolean[] closeAccount(int accountType) {
+        String username = currentCustomer.getUsername();
+        AccountLocks.lock(username, accountType);
+        try {
+            currentCustomer = CustomerDatabase.getCustomer(username);
+            return close(accountType);
+        } finally {
+            AccountLocks.unlock(username, accountType);
+        }
+    }
+
+    private boolean[] close(int accountType) {
+        boolean[] result = new boolean[] {false, false};
+        if (currentCustomer == null) {
+            System.out.println("[Debug]: Current customer is null");
+        }
+        if (currentCustomer.getBankAccount(accountType) != null) {
+            Account account = currentCustomer.getBankAccount(accountType);
+            // If account has enough money to delete an account
+            if (account.getBalance() >= Bank.ACCOUNT_CREATION_DELETION_COST){
+                if (accountType == Account.SECURITIES_ACCOUNT){
+                    //Remove Customer from the oberve
+                    manager.removeObserver((SecurityObserver)account);
+                }
+                // If customer can't send the money to Manager for any reason (database crash)
+                if (!transferAmount(accountType, Manager.MANAGER_ACCOUNT, manager.getUsername(),
+                        new Currency(Bank.ACCOUNT_CREATION_DELETION_COST, Currency.DOLLARS))) {
+                    result[1] = true;
+                } else {
+                    currentCustomer.closeAccount(accountType);
+                }
+                double liquidAmount = account.getBalance();
+                System.out.println("You have " + liquidAmount + " dollars in liquid funds. Currently this amount will be lost. Possibly put into the collateral pool? Means more money for Bank... 0-0");
+                
+            } else {
+                result[1] = true;
+            }
+        } else {
+            result[0] = true;
+        }
+        return result;
+    }
+}
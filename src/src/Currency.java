@@ -15,26 +15,37 @@ public class Currency {
     public static final int YUAN = 1;
     public static final int WON = 2;
     public static final int INVALID = -1;
-    private double amount;
+    // Amount in hundredths, see Money.java
+    private long minorUnits;
     private int currencyType;
 
     public Currency(int currencyType) {
         this.currencyType = currencyType;
-        this.amount = 0;
+        this.minorUnits = 0;
     }
 
     public Currency(Currency currency) {
-        this.amount = currency.getAmount();
+        this.minorUnits = currency.getMinorUnits();
         this.currencyType = currency.getCurrencyType();
     }
 
     public Currency(double amount, int currencyType) {
-        this.amount = amount;
+        this.minorUnits = Money.toMinorUnits(amount);
         this.currencyType = currencyType;
     }
 
+    public static Currency ofMinorUnits(long minorUnits, int currencyType) {
+        Currency currency = new Currency(currencyType);
+        currency.minorUnits = minorUnits;
+        return currency;
+    }
+
     public double getAmount() {
-        return amount;
+        return Money.toAmount(minorUnits);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
     }
 
     public int getCurrencyType() {
@@ -54,39 +65,27 @@ public class Currency {
     }
 
     public Currency withdraw(double amount) {
-        if (amount > this.amount) {
+        long withdrawn = Money.toMinorUnits(amount);
+        if (withdrawn > this.minorUnits) {
             return new Currency(0, INVALID);
         } else {
-            this.amount -= amount;
-            return new Currency(amount, currencyType);
+            this.minorUnits -= withdrawn;
+            return ofMinorUnits(withdrawn, currencyType);
         }
     }
 
     public void deposit(double amount) {
-        this.amount += amount;
+        this.minorUnits += Money.toMinorUnits(amount);
     }
 
     public static Currency exchange(Currency currency, int targetCurrencyType) {
         if (currency.getCurrencyType() == targetCurrencyType) {
             return currency;
         }
-        double amount = -1;
-        if (currency.getCurrencyType() == YUAN) {
-            amount = currency.getAmount() / 7;
-        } else if (currency.getCurrencyType() == WON) {
-            amount = currency.getAmount() / 1300;
-        } else if (currency.getCurrencyType() == DOLLARS) {
-            amount = currency.getAmount();
-        }
-
-        if (targetCurrencyType == DOLLARS) {
-            return new Currency(amount, DOLLARS);
-        } else if (targetCurrencyType == YUAN) {
-            return new Currency(amount * 7, YUAN);
-        } else if (targetCurrencyType == WON) {
-            return new Currency(amount * 1300, WON);
-        } else {
+        if (!ExchangeRates.isValidCurrencyType(currency.getCurrencyType()) || !ExchangeRates.isValidCurrencyType(targetCurrencyType)) {
             return null;
         }
+        return ofMinorUnits(Money.exchange(currency.getMinorUnits(), currency.getCurrencyType(), targetCurrencyType),
+                targetCurrencyType);
     }
-}
\ No newline at end of file
+}
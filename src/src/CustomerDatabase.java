@@ -17,12 +17,7 @@ import com.opencsv.exceptions.CsvException;
 
 import java.util.*;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 // This class will support getting and creating all objects from CSV files
 
@@ -36,65 +31,64 @@ public class CustomerDatabase {
 
     public static Customer getCustomer(String username) {
         Customer customer = new Customer(username);
-        boolean fileExists = new File(CUSTOMER_SAVINGS_CSV_FILEPATH).exists();
-        
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SAVINGS_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        Map<Integer, Currency> hm = new HashMap<>();
-                        hm.put(Currency.DOLLARS, new Currency(Double.parseDouble(account[1]), Currency.DOLLARS));
-                        hm.put(Currency.YUAN, new Currency(Double.parseDouble(account[2]), Currency.YUAN));
-                        hm.put(Currency.WON, new Currency(Double.parseDouble(account[3]), Currency.WON));
-                        customer.addBankAccount(Account.SAVINGS_ACCOUNT, new SavingsAccount(hm, username));
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
-        }
 
-        fileExists = new File(CUSTOMER_CHECKING_CSV_FILEPATH).exists();
+        double[] savings = AccountTable.getBalances(Account.SAVINGS_ACCOUNT, username);
+        if (savings != null) {
+            customer.addBankAccount(Account.SAVINGS_ACCOUNT, new SavingsAccount(toCurrencyMap(savings), username));
+        }
 
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_CHECKING_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        Map<Integer, Currency> hm = new HashMap<>();
-                        hm.put(Currency.DOLLARS, new Currency(Double.parseDouble(account[1]), Currency.DOLLARS));
-                        hm.put(Currency.YUAN, new Currency(Double.parseDouble(account[2]), Currency.YUAN));
-                        hm.put(Currency.WON, new Currency(Double.parseDouble(account[3]), Currency.WON));
+        double[] checking = AccountTable.getBalances(Account.CHECKINGS_ACCOUNT, username);
+        if (checking != null) {
+            customer.addBankAccount(Account.CHECKINGS_ACCOUNT, new CheckingAccount(toCurrencyMap(checking), username));
+        }
 
-                        customer.addBankAccount(Account.CHECKINGS_ACCOUNT, new CheckingAccount(hm, username));
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
+        double[] security = AccountTable.getBalances(Account.SECURITIES_ACCOUNT, username);
+        if (security != null) {
+            boolean isEnabled = AccountTable.isEnabled(username);
+            customer.addBankAccount(Account.SECURITIES_ACCOUNT, new SecurityAccount(toCurrencyMap(security), username, isEnabled));
         }
 
-        fileExists = new File(CUSTOMER_SECURITY_CSV_FILEPATH).exists();
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        Map<Integer, Currency> hm = new HashMap<>();
-                        hm.put(Currency.DOLLARS, new Currency(Double.parseDouble(account[1]), Currency.DOLLARS));
-                        hm.put(Currency.YUAN, new Currency(Double.parseDouble(account[2]), Currency.YUAN));
-                        hm.put(Currency.WON, new Currency(Double.parseDouble(account[3]), Currency.WON));
-                        boolean isEnabled = Boolean.valueOf(account[4]);
-                        customer.addBankAccount(Account.SECURITIES_ACCOUNT, new SecurityAccount(hm, username, isEnabled));
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
+        return customer;
+    }
+
+    // Every open account of accountType, built from the balances AccountTable keeps in memory
+    public static List<Account> getAllAccounts(int accountType) {
+        List<Account> accounts = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : AccountTable.getAllBalances(accountType).entrySet()) {
+            String username = entry.getKey();
+            double[] amounts = new double[entry.getValue().length];
+            for (int i = 0; i < amounts.length; i++) {
+                amounts[i] = Money.toAmount(entry.getValue()[i]);
+            }
+            if (accountType == Account.SAVINGS_ACCOUNT) {
+                accounts.add(new SavingsAccount(toCurrencyMap(amounts), username));
+            } else if (accountType == Account.CHECKINGS_ACCOUNT) {
+                accounts.add(new CheckingAccount(toCurrencyMap(amounts), username));
+            } else if (accountType == Account.SECURITIES_ACCOUNT) {
+                accounts.add(new SecurityAccount(toCurrencyMap(amounts), username, AccountTable.isEnabled(username)));
             }
         }
+        return accounts;
+    }
 
-        return customer;
+    private static Map<Integer, Currency> toCurrencyMap(double[] amounts) {
+        Map<Integer, Currency> hm = new HashMap<>();
+        hm.put(Currency.DOLLARS, new Currency(amounts[Currency.DOLLARS], Currency.DOLLARS));
+        hm.put(Currency.YUAN, new Currency(amounts[Currency.YUAN], Currency.YUAN));
+        hm.put(Currency.WON, new Currency(amounts[Currency.WON], Currency.WON));
+        return hm;
+    }
+
+    // CSV file backing each account type, null if the account type is not supported
+    public static String getFilePath(int accountType) {
+        if (accountType == Account.SAVINGS_ACCOUNT) {
+            return CUSTOMER_SAVINGS_CSV_FILEPATH;
+        } else if (accountType == Account.CHECKINGS_ACCOUNT) {
+            return CUSTOMER_CHECKING_CSV_FILEPATH;
+        } else if (accountType == Account.SECURITIES_ACCOUNT) {
+            return CUSTOMER_SECURITY_CSV_FILEPATH;
+        }
+        return null;
     }
 
     public static List<Customer> getAllCustomers() {
@@ -116,427 +110,77 @@ public class CustomerDatabase {
     }
 
     public static boolean createCustomerSavingsAccount(String username, Currency currency) {
-        boolean fileExists = new File(CUSTOMER_SAVINGS_CSV_FILEPATH).exists();
-
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SAVINGS_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        return false;
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
+        return createCustomerAccount(username, currency, Account.SAVINGS_ACCOUNT);
+    }
 
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_SAVINGS_CSV_FILEPATH, true))) {
-            String[] account = {username, "0.0", "0.0", "0.0"};
-            if (currency.getCurrencyType() == Currency.DOLLARS) {
-                account[1] = "" + (currency.getAmount());
-            } else if (currency.getCurrencyType() == Currency.YUAN) {
-                account[2] = "" + currency.getAmount();
-            } else if (currency.getCurrencyType() == Currency.WON) {
-                account[3] = "" + currency.getAmount();
-            }
-            writer.writeNext(account);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    private static boolean createCustomerAccount(String username, Currency currency, int accountType) {
+        long[] amounts = new long[3];
+        int currencyType = currency.getCurrencyType();
+        if (currencyType == Currency.DOLLARS || currencyType == Currency.YUAN || currencyType == Currency.WON) {
+            amounts[currencyType] = currency.getMinorUnits();
         }
+        return AccountTable.createAccount(accountType, username, amounts);
     }
 
     public static boolean disableOrEnableCustomerCheckingAccount(String username, boolean enable) {
-        boolean fileExists = new File(CUSTOMER_SECURITY_CSV_FILEPATH).exists();
-        List<String[]> accounts;
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-                accounts = reader.readAll();
-                boolean accountFound = false;
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        account[4] = "" + enable;
-                        accountFound = true;
-                        break;
-                    }
-                }
-                if (!accountFound) {
-                    return false;
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        } else {
-            // csv file doesnt exist
-            return false;
-        }
-    
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return AccountTable.setEnabled(username, enable);
     }
 
     public static boolean createCustomerCheckingAccount(String username, Currency currency) {
-        boolean fileExists = new File(CUSTOMER_CHECKING_CSV_FILEPATH).exists();
-
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_CHECKING_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        return false;
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_CHECKING_CSV_FILEPATH, true))) {
-            String[] account = {username, "0.0", "0.0", "0.0"};
-            if (currency.getCurrencyType() == Currency.DOLLARS) {
-                account[1] = "" + currency.getAmount();
-            } else if (currency.getCurrencyType() == Currency.YUAN) {
-                account[2] = "" + currency.getAmount();
-            } else if (currency.getCurrencyType() == Currency.WON) {
-                account[3] = "" + currency.getAmount();
-            }
-            writer.writeNext(account);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return createCustomerAccount(username, currency, Account.CHECKINGS_ACCOUNT);
     }
 
     public static boolean createCustomerSecurityAccount(String username, Currency currency) {
-        boolean fileExists = new File(CUSTOMER_SECURITY_CSV_FILEPATH).exists();
-
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        return false;
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_SECURITY_CSV_FILEPATH, true))) {
-            String[] account = {username, "0.0", "0.0", "0.0", "true"};
-            if (currency.getCurrencyType() == Currency.DOLLARS) {
-                account[1] = "" + currency.getAmount();
-            } else if (currency.getCurrencyType() == Currency.YUAN) {
-                account[2] = "" + currency.getAmount();
-            } else if (currency.getCurrencyType() == Currency.WON) {
-                account[3] = "" + currency.getAmount();
-            }
-            writer.writeNext(account);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return createCustomerAccount(username, currency, Account.SECURITIES_ACCOUNT);
     }
 
+    // Goes through AccountTable, which logs the change and applies it in memory
+    // instead of rewriting the whole account CSV
     public static boolean deposit(String username, Currency currency, int accountType) {
-        String filePath = "";
-        if (accountType == Account.SAVINGS_ACCOUNT) {
-            filePath = CUSTOMER_SAVINGS_CSV_FILEPATH;
-        } else if (accountType == Account.CHECKINGS_ACCOUNT) {
-            filePath = CUSTOMER_CHECKING_CSV_FILEPATH;
-        } else if (accountType == Account.SECURITIES_ACCOUNT) {
-            filePath = CUSTOMER_SECURITY_CSV_FILEPATH;
-        } else {
-            return false;
-        }
-        int index = currency.getCurrencyType() + 1;
-        boolean fileExists = new File(filePath).exists();
-        List<String[]> accounts;
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-                accounts = reader.readAll();
-                boolean accountFound = false;
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-                        account[index] = String.valueOf(Double.parseDouble(account[index]) + currency.getAmount());
-                        accountFound = true;
-                        break;
-                    }
-                }
-                if (!accountFound) {
-                    return false;
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        } else {
-            // csv file doesnt exist
-            return false;
-        }
-    
-        try (CSVWriter writer = new CSVWriter(new FileWriter(filePath))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return AccountTable.addMinorUnits(accountType, username, currency.getCurrencyType(), currency.getMinorUnits());
     }
 
     public static boolean closeAccount(String username, int accountType) {
-        String filePath = "";
-        if (accountType == Account.SAVINGS_ACCOUNT) {
-            filePath = CUSTOMER_SAVINGS_CSV_FILEPATH;
-        } else if (accountType == Account.CHECKINGS_ACCOUNT) {
-            filePath = CUSTOMER_CHECKING_CSV_FILEPATH;
-        } else if (accountType == Account.SECURITIES_ACCOUNT) {
-            filePath = CUSTOMER_SECURITY_CSV_FILEPATH;
-        } else {
-            return false;
-        }
-
-        boolean fileExists = new File(filePath).exists();
-        if (!fileExists) {
-            // CSV file doesn't exist
-            return false;
-        }
-
-        List<String[]> accounts = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            accounts = reader.readAll();
-            boolean accountFound = false;
-            // written with chat
-            Iterator<String[]> iterator = accounts.iterator();
-            while (iterator.hasNext()) {
-                String[] account = iterator.next();
-                if (account[0].equals(username)) {
-                    iterator.remove();
-                    accountFound = true;
-                    break;
-                }
-            }
-            if (!accountFound) {
-                return false;
-            }
-        } catch (IOException | CsvException e) {
-            e.printStackTrace();
-            return false;
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(filePath))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return AccountTable.closeAccount(accountType, username);
     }
 
     public static boolean withdraw(String username, Currency currency, int accountType) {
-        String filePath = "";
-        if (accountType == Account.SAVINGS_ACCOUNT) {
-            filePath = CUSTOMER_SAVINGS_CSV_FILEPATH;
-        } else if (accountType == Account.CHECKINGS_ACCOUNT) {
-            filePath = CUSTOMER_CHECKING_CSV_FILEPATH;
-        } else if (accountType == Account.SECURITIES_ACCOUNT) {
-            filePath = CUSTOMER_SECURITY_CSV_FILEPATH;
-        } else {
-            return false;
-        }
-        int index = currency.getCurrencyType() + 1;
-        boolean fileExists = new File(filePath).exists();
-        List<String[]> accounts;
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-                accounts = reader.readAll();
-                boolean accountFound = false;
-                for (String[] account : accounts) {
-                    if (account[0].equals(username)) {
-
-                        account[index] = String.valueOf(Double.parseDouble(account[index]) - currency.getAmount());
-
-                        accountFound = true;
-                        break;
-                    }
-                }
-                if (!accountFound) {
-                    return false;
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        } else {
-            // csv file doesnt exist
-            return false;
-        }
-        try (CSVWriter writer = new CSVWriter(new FileWriter(filePath))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return AccountTable.addMinorUnits(accountType, username, currency.getCurrencyType(), -currency.getMinorUnits());
     }
 
+    // The simulated date is held in memory by BankClock
     public static LocalDate getDate() {
-        Path filePath = Paths.get(DATE_TXT_FILEPATH);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        try {
-            LocalDate date;
-
-            if (Files.exists(filePath)) {
-                byte[] bytes = Files.readAllBytes(filePath);
-                String dateString = new String(bytes, StandardCharsets.UTF_8).trim();
-                date = LocalDate.parse(dateString, formatter);
-            } else {
-                date = LocalDate.now();
-                Files.write(filePath, date.format(formatter).getBytes(StandardCharsets.UTF_8));
-            }
-            return date;
-        } catch (IOException e) {
-            System.out.println("An error occurred while reading/writing the date file.");
-            e.printStackTrace();
-        }
-        return null;
+        return BankClock.getDate();
     }
 
     public static void increaseDateByDay() {
-        Path filePath = Paths.get(DATE_TXT_FILEPATH);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Written with GPT
-        try {
-            LocalDate date;
-
-            if (Files.exists(filePath)) {
-                byte[] bytes = Files.readAllBytes(filePath);
-                String dateString = new String(bytes, StandardCharsets.UTF_8).trim();
-                date = LocalDate.parse(dateString, formatter);
-            } else {
-                date = LocalDate.now();
-                Files.write(filePath, date.format(formatter).getBytes(StandardCharsets.UTF_8));
-            }
-            LocalDate updatedDate = date.plusDays(1);
-            Files.write(filePath, updatedDate.format(formatter).getBytes(StandardCharsets.UTF_8));
-        } catch (IOException e) {
-            System.out.println("An error occurred while reading/writing the date file.");
-            e.printStackTrace();
-        }
+        BankClock.increaseDateByDay();
     }
 
     public static void increaseDateByMonth() {
-        Path filePath = Paths.get(DATE_TXT_FILEPATH);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Written with GPT
-        try {
-            LocalDate date;
-
-            if (Files.exists(filePath)) {
-                byte[] bytes = Files.readAllBytes(filePath);
-                String dateString = new String(bytes, StandardCharsets.UTF_8).trim();
-                date = LocalDate.parse(dateString, formatter);
-            } else {
-                date = LocalDate.now();
-                Files.write(filePath, date.format(formatter).getBytes(StandardCharsets.UTF_8));
-            }
-            LocalDate updatedDate = date.plusMonths(1);
-            Files.write(filePath, updatedDate.format(formatter).getBytes(StandardCharsets.UTF_8));
-        } catch (IOException e) {
-            System.out.println("An error occurred while reading/writing the date file.");
-            e.printStackTrace();
-        }
+        BankClock.increaseDateByMonth();
     }
 
     public static boolean updateCustomerAccount(Account account) {
-        String filepath = "";
-        if (account.getAccountType() == Account.SAVINGS_ACCOUNT) {
-            filepath = CUSTOMER_SAVINGS_CSV_FILEPATH;
-        } else if (account.getAccountType() == Account.CHECKINGS_ACCOUNT) {
-            filepath = CUSTOMER_CHECKING_CSV_FILEPATH;
-        } else if (account.getAccountType() == Account.SECURITIES_ACCOUNT) {
-            filepath = CUSTOMER_SECURITY_CSV_FILEPATH;
-        }
-        boolean fileExists = new File(filepath).exists();
-        List<String[]> accounts;
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(filepath))) {
-                accounts = reader.readAll();
-                boolean accountFound = false;
-                for (String[] acc : accounts) {
-                    if (acc[0].equals(account.getUsername())) {
-                        acc[1] = String.valueOf(account.getCurrency(Currency.DOLLARS).getAmount());
-                        acc[2] = String.valueOf(account.getCurrency(Currency.YUAN).getAmount());
-                        acc[3] = String.valueOf(account.getCurrency(Currency.WON).getAmount());
-                        accountFound = true;
-                        break;
-                    }
-                }
-                if (!accountFound) {
-                    return false;
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return false;
-            }
-        } else {
-            // csv file doesnt exist
-            return false;
-        }
-    
-        try (CSVWriter writer = new CSVWriter(new FileWriter(filepath))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        long[] amounts = {account.getCurrency(Currency.DOLLARS).getMinorUnits(),
+            account.getCurrency(Currency.YUAN).getMinorUnits(), account.getCurrency(Currency.WON).getMinorUnits()};
+        return AccountTable.setBalances(account.getAccountType(), account.getUsername(), amounts);
     }
 
     public static double[] getAccountBalanceFromCSV(String username, int accountType) {
-        String filePath;
-        switch(accountType) {
-            case Account.SAVINGS_ACCOUNT:
-                filePath = CUSTOMER_SAVINGS_CSV_FILEPATH;
-                break;
-            case Account.CHECKINGS_ACCOUNT:
-                filePath = CUSTOMER_CHECKING_CSV_FILEPATH;
-                break;
-            default:
-                return new double[]{0, 0, 0, 0, -1}; // Returns if account type is not supported
+        if (accountType != Account.SAVINGS_ACCOUNT && accountType != Account.CHECKINGS_ACCOUNT) {
+            return new double[]{0, 0, 0, 0, -1}; // Returns if account type is not supported
         }
 
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] nextLine;
-            while ((nextLine = reader.readNext()) != null) {
-                if (nextLine[0].equals(username)) {
-                    double usd = Double.parseDouble(nextLine[1]);
-                    double yuan = Double.parseDouble(nextLine[2]);
-                    double won = Double.parseDouble(nextLine[3]);
-                    double totalBalance = usd + yuan/7 + won/1300;
-                    return new double[]{totalBalance, usd, yuan, won, 0};
-                }
+        long[] amounts = AccountTable.getMinorBalances(accountType, username);
+        if (amounts != null) {
+            long total = 0;
+            for (int currencyType = 0; currencyType < amounts.length; currencyType++) {
+                total += Money.toDollars(amounts[currencyType], currencyType);
             }
-        } catch (IOException | CsvException e) {
-            e.printStackTrace();
+            return new double[]{Money.toAmount(total), Money.toAmount(amounts[Currency.DOLLARS]),
+                Money.toAmount(amounts[Currency.YUAN]), Money.toAmount(amounts[Currency.WON]), 0};
         }
-        return new double[]{0, 0, 0, 0, -1}; // Returns if no account is found or on error
+        return new double[]{0, 0, 0, 0, -1}; // Returns if no account is found
     }
 }
@@ -0,0 +1,261 @@
+/*
+  * DailyAggregates.java
+  *
+  * Running totals of each simulated day's transactions, kept up to date as
+  * TransactionDatabase commits them: the number of transactions, the amount
+  * moved in each currency, the amount received and sent by each account
+  * type and the fee income received by the Manager's account. Dashboards
+  * read these few numbers instead of adding up the transaction history.
+  *
+  * dailyAggregates.csv holds one line per committed batch and day with the
+  * batch's totals and the number of log rows covered once the batch was
+  * added; loading adds the lines of a day together and rewrites the file
+  * with one line per day once it has grown. Rows the log got after the last
+  * line, because the process stopped between writing a batch and its
+  * totals, are added up again on loading. If the file is missing the whole
+  * log is added up.
+  */
+
+package src;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+public class DailyAggregates {
+    public static final String DAILY_AGGREGATES_CSV_FILEPATH = "dailyAggregates.csv";
+    // Savings, checking, securities and the Manager's account
+    public static final int ACCOUNT_TYPE_COUNT = 4;
+    // date, count, fee income, amounts per currency, received per account type,
+    // sent per account type, log rows covered
+    private static final int COLUMNS = 4 + ExchangeRates.CURRENCY_COUNT + 2 * ACCOUNT_TYPE_COUNT;
+
+    // Totals of one day. Amounts are minor units, per account type and fees in dollars
+    public static class Day {
+        private int count;
+        private long feeIncome;
+        private final long[] amounts = new long[ExchangeRates.CURRENCY_COUNT];
+        private final long[] received = new long[ACCOUNT_TYPE_COUNT];
+        private final long[] sent = new long[ACCOUNT_TYPE_COUNT];
+
+        private void add(Transaction transaction) {
+            Currency currency = transaction.getCurrency();
+            long dollars = Money.toDollars(currency.getMinorUnits(), currency.getCurrencyType());
+            count++;
+            amounts[currency.getCurrencyType()] += currency.getMinorUnits();
+            if (isAccountType(transaction.getReceiverAccountType())) {
+                received[transaction.getReceiverAccountType()] += dollars;
+            }
+            if (isAccountType(transaction.getSenderAccountType())) {
+                sent[transaction.getSenderAccountType()] += dollars;
+            }
+            if (transaction.getReceiverAccountType() == Manager.MANAGER_ACCOUNT) {
+                feeIncome += dollars;
+            }
+        }
+
+        private void add(Day other) {
+            count += other.count;
+            feeIncome += other.feeIncome;
+            for (int i = 0; i < amounts.length; i++) {
+                amounts[i] += other.amounts[i];
+            }
+            for (int i = 0; i < ACCOUNT_TYPE_COUNT; i++) {
+                received[i] += other.received[i];
+                sent[i] += other.sent[i];
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getFeeIncome() {
+            return feeIncome;
+        }
+
+        public long getAmount(int currencyType) {
+            return amounts[currencyType];
+        }
+
+        public long getReceived(int accountType) {
+            return received[accountType];
+        }
+
+        public long getSent(int accountType) {
+            return sent[accountType];
+        }
+
+        // Everything moved during the day, in dollar minor units at today's rates
+        public long getCashFlow() {
+            long cashFlow = 0;
+            for (int currencyType = 0; currencyType < amounts.length; currencyType++) {
+                cashFlow += Money.toDollars(amounts[currencyType], currencyType);
+            }
+            return cashFlow;
+        }
+
+        private String[] toRow(LocalDate date, int position) {
+            String[] row = new String[COLUMNS];
+            int i = 0;
+            row[i++] = date.toString();
+            row[i++] = String.valueOf(count);
+            row[i++] = String.valueOf(feeIncome);
+            for (long amount : amounts) {
+                row[i++] = String.valueOf(amount);
+            }
+            for (long amount : received) {
+                row[i++] = String.valueOf(amount);
+            }
+            for (long amount : sent) {
+                row[i++] = String.valueOf(amount);
+            }
+            row[i] = String.valueOf(position);
+            return row;
+        }
+
+        private static Day fromRow(String[] row) {
+            Day day = new Day();
+            int i = 1;
+            day.count = Integer.parseInt(row[i++]);
+            day.feeIncome = Long.parseLong(row[i++]);
+            for (int j = 0; j < day.amounts.length; j++) {
+                day.amounts[j] = Long.parseLong(row[i++]);
+            }
+            for (int j = 0; j < ACCOUNT_TYPE_COUNT; j++) {
+                day.received[j] = Long.parseLong(row[i++]);
+            }
+            for (int j = 0; j < ACCOUNT_TYPE_COUNT; j++) {
+                day.sent[j] = Long.parseLong(row[i++]);
+            }
+            return day;
+        }
+    }
+
+    private static Map<LocalDate, Day> days;
+    // Rows of the transaction log, in append order, the totals include
+    private static int position;
+
+    // Writes rows to the transaction log and adds them to the totals. Batches
+    // are written one at a time, so the rows covered always match the log
+    static synchronized boolean append(List<String[]> rows) {
+        ensureLoaded();
+        if (!TransactionLog.appendToday(rows)) {
+            // Some of the rows may have made it into the log
+            catchUp();
+            return false;
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (String[] row : rows) {
+            transactions.add(TransactionDatabase.toTransaction(row));
+        }
+        add(transactions, position + TransactionLog.selectFrom(position).size());
+        return true;
+    }
+
+    // Adds a batch to the totals and saves it as covering the log up to end
+    private static void add(List<Transaction> transactions, int end) {
+        Map<LocalDate, Day> batch = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            batch.computeIfAbsent(transaction.getDate(), date -> new Day()).add(transaction);
+        }
+        try (CSVWriter writer = new CSVWriter(new FileWriter(DAILY_AGGREGATES_CSV_FILEPATH, true))) {
+            for (Map.Entry<LocalDate, Day> entry : batch.entrySet()) {
+                writer.writeNext(entry.getValue().toRow(entry.getKey(), end));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Map.Entry<LocalDate, Day> entry : batch.entrySet()) {
+            days.computeIfAbsent(entry.getKey(), date -> new Day()).add(entry.getValue());
+        }
+        position = end;
+    }
+
+    // Adds the rows the log got after the ones the totals include
+    private static void catchUp() {
+        TransactionLog.Selection tail = TransactionLog.selectFrom(position);
+        if (tail.size() == 0) {
+            return;
+        }
+        List<Transaction> transactions = TransactionDatabase.getTransactions(tail, 0, tail.size());
+        if (transactions != null) {
+            add(transactions, position + tail.size());
+        }
+    }
+
+    // Totals of date, empty if nothing happened that day
+    public static synchronized Day getDay(LocalDate date) {
+        ensureLoaded();
+        Day copy = new Day();
+        Day day = days.get(date);
+        if (day != null) {
+            copy.add(day);
+        }
+        return copy;
+    }
+
+    private static void ensureLoaded() {
+        if (days != null) {
+            return;
+        }
+        days = new TreeMap<>();
+        position = 0;
+        if (!new File(DAILY_AGGREGATES_CSV_FILEPATH).exists()) {
+            // Adds up the whole transaction log
+            catchUp();
+            save();
+            return;
+        }
+        int lines = 0;
+        try (CSVReader reader = new CSVReader(new FileReader(DAILY_AGGREGATES_CSV_FILEPATH))) {
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length != COLUMNS) {
+                    continue;
+                }
+                days.computeIfAbsent(LocalDate.parse(row[0]), date -> new Day()).add(Day.fromRow(row));
+                position = Math.max(position, Integer.parseInt(row[COLUMNS - 1]));
+                lines++;
+            }
+        } catch (IOException | CsvException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        catchUp();
+        if (lines > 2 * days.size()) {
+            save();
+        }
+    }
+
+    // One line per day, written to a temporary file first
+    private static void save() {
+        File tmp = new File(DAILY_AGGREGATES_CSV_FILEPATH + ".tmp");
+        try (CSVWriter writer = new CSVWriter(new FileWriter(tmp))) {
+            for (Map.Entry<LocalDate, Day> entry : days.entrySet()) {
+                writer.writeNext(entry.getValue().toRow(entry.getKey(), position));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), new File(DAILY_AGGREGATES_CSV_FILEPATH).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isAccountType(int accountType) {
+        return accountType >= 0 && accountType < ACCOUNT_TYPE_COUNT;
+    }
+}
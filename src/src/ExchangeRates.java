@@ -0,0 +1,123 @@
+/*
+  * ExchangeRates.java
+  *
+  * Exchange rates between the bank's currencies. A snapshot holds the full
+  * matrix of cross rates, rates[from][to], so a conversion is one lookup and
+  * one multiply. Snapshots are never modified; the Manager changing a rate
+  * builds a new one and swaps it in, so a reader always converts with one
+  * consistent set of rates. Every swap bumps the version, letting callers
+  * that cache converted amounts notice that rates have changed.
+  * Rates are stored as units per dollar in exchangeRates.csv.
+  */
+
+package src;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+public class ExchangeRates {
+    public static final String EXCHANGE_RATES_CSV_FILEPATH = "exchangeRates.csv";
+    public static final int CURRENCY_COUNT = 3;
+    // How many units of each currency one dollar buys, indexed by currency type
+    private static final double[] DEFAULT_UNITS_PER_DOLLAR = {1, 7, 1300};
+
+    private static class Snapshot {
+        final double[] unitsPerDollar;
+        final double[][] rates;
+        final long version;
+
+        Snapshot(double[] unitsPerDollar, long version) {
+            this.unitsPerDollar = unitsPerDollar.clone();
+            this.rates = new double[CURRENCY_COUNT][CURRENCY_COUNT];
+            for (int from = 0; from < CURRENCY_COUNT; from++) {
+                for (int to = 0; to < CURRENCY_COUNT; to++) {
+                    rates[from][to] = from == to ? 1 : unitsPerDollar[to] / unitsPerDollar[from];
+                }
+            }
+            this.version = version;
+        }
+    }
+
+    private static final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(load(), 0));
+
+    // Amount of "to" one unit of "from" buys
+    public static double getRate(int currencyType, int targetCurrencyType) {
+        return current.get().rates[currencyType][targetCurrencyType];
+    }
+
+    public static double getUnitsPerDollar(int currencyType) {
+        return current.get().unitsPerDollar[currencyType];
+    }
+
+    public static long getVersion() {
+        return current.get().version;
+    }
+
+    public static boolean isValidCurrencyType(int currencyType) {
+        return currencyType >= 0 && currencyType < CURRENCY_COUNT;
+    }
+
+    public static long exchange(long minorUnits, int currencyType, int targetCurrencyType) {
+        if (currencyType == targetCurrencyType) {
+            return minorUnits;
+        }
+        return Math.round(minorUnits * current.get().rates[currencyType][targetCurrencyType]);
+    }
+
+    // Sets how many units of currencyType one dollar buys. The dollar itself stays at 1
+    public static boolean setUnitsPerDollar(int currencyType, double unitsPerDollar) {
+        if (!isValidCurrencyType(currencyType) || currencyType == Currency.DOLLARS || unitsPerDollar <= 0) {
+            return false;
+        }
+        Snapshot previous;
+        Snapshot updated;
+        do {
+            previous = current.get();
+            double[] units = previous.unitsPerDollar.clone();
+            units[currencyType] = unitsPerDollar;
+            updated = new Snapshot(units, previous.version + 1);
+        } while (!current.compareAndSet(previous, updated));
+        save(updated);
+        return true;
+    }
+
+    private static synchronized void save(Snapshot snapshot) {
+        // A later swap may already have been saved
+        if (snapshot != current.get()) {
+            return;
+        }
+        try (CSVWriter writer = new CSVWriter(new FileWriter(EXCHANGE_RATES_CSV_FILEPATH))) {
+            for (int currencyType = 0; currencyType < CURRENCY_COUNT; currencyType++) {
+                writer.writeNext(new String[] {String.valueOf(currencyType), String.valueOf(snapshot.unitsPerDollar[currencyType])});
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static double[] load() {
+        double[] units = DEFAULT_UNITS_PER_DOLLAR.clone();
+        if (new File(EXCHANGE_RATES_CSV_FILEPATH).exists()) {
+            try (CSVReader reader = new CSVReader(new FileReader(EXCHANGE_RATES_CSV_FILEPATH))) {
+                for (String[] rate : reader.readAll()) {
+                    int currencyType = Integer.parseInt(rate[0]);
+                    double unitsPerDollar = Double.parseDouble(rate[1]);
+                    if (isValidCurrencyType(currencyType) && unitsPerDollar > 0) {
+                        units[currencyType] = unitsPerDollar;
+                    }
+                }
+            } catch (IOException | CsvException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        units[Currency.DOLLARS] = 1;
+        return units;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+  * InterestPostingJob.java
+  *
+  * Month-end job that pays account interest to every rich savings account.
+  * Savings balances are read in one pass, interest is computed for all
+  * accounts (in parallel), and the new balances and the interest
+  * transactions are each written as a single batch. Progress and timing
+  * are printed so a long month-end can be followed.
+  */
+
+package src;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class InterestPostingJob {
+    private static final int PROGRESS_STEP = 1000;
+
+    private final double interestRate;
+    private final double minimumBalance;
+
+    public InterestPostingJob(double interestRate, double minimumBalance) {
+        this.interestRate = interestRate;
+        this.minimumBalance = minimumBalance;
+    }
+
+    // Returns the number of accounts that received interest
+    public int run() {
+        long start = System.currentTimeMillis();
+        Map<String, long[]> balances = AccountTable.getAllBalances(Account.SAVINGS_ACCOUNT);
+        long loaded = System.currentTimeMillis();
+        System.out.println("[Interest]: Loaded " + balances.size() + " savings accounts in " + (loaded - start) + " ms");
+
+        // username -> interest per currency in minor units, only for accounts that qualify
+        long minimum = Money.toMinorUnits(minimumBalance);
+        Map<String, long[]> interest = balances.entrySet().parallelStream()
+                .filter(entry -> totalInDollars(entry.getValue()) >= minimum)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> computeInterest(entry.getValue())));
+        long computed = System.currentTimeMillis();
+        System.out.println("[Interest]: " + interest.size() + " accounts eligible, computed in " + (computed - loaded) + " ms");
+
+        // Accounts closed since the balances were read are skipped by the table
+        Set<String> posted = AccountTable.addToBalances(Account.SAVINGS_ACCOUNT, interest);
+
+        List<Transaction> transactions = new ArrayList<>();
+        int processed = 0;
+        for (String username : posted) {
+            long[] amounts = interest.get(username);
+            for (int currencyType = 0; currencyType < amounts.length; currencyType++) {
+                if (amounts[currencyType] > 0) {
+                    transactions.add(new Transaction(Currency.ofMinorUnits(amounts[currencyType], currencyType),
+                            "Manager", username, Manager.MANAGER_ACCOUNT, Account.SAVINGS_ACCOUNT));
+                }
+            }
+            processed++;
+            if (processed % PROGRESS_STEP == 0) {
+                System.out.println("[Interest]: Prepared " + processed + "/" + posted.size() + " accounts");
+            }
+        }
+        TransactionDatabase.createTransactions(transactions);
+
+        long end = System.currentTimeMillis();
+        System.out.println("[Interest]: Posted interest to " + posted.size() + " accounts (" + transactions.size()
+                + " transactions) in " + (end - start) + " ms");
+        return posted.size();
+    }
+
+    private long[] computeInterest(long[] amounts) {
+        long[] interest = new long[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            if (amounts[i] > 0) {
+                interest[i] = Money.applyRate(amounts[i], interestRate);
+            }
+        }
+        return interest;
+    }
+
+    private static long totalInDollars(long[] amounts) {
+        long total = 0;
+        for (int currencyType = 0; currencyType < amounts.length; currencyType++) {
+            total += Money.toDollars(amounts[currencyType], currencyType);
+        }
+        return total;
+    }
+}
@@ -16,6 +16,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 import com.opencsv.CSVReader;
@@ -28,7 +30,12 @@ public class LoanDatabase {
     public static String LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH = "loanNCollateralForApproval.csv";
     public static String LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH = "loanNCollateralActive.csv";
 
-    public static Loan getLoan(String username, String collateral, boolean isFromToBeApproved){
+    // All methods share the class lock: addLoantoActiveList, rejectLoan, closeLoan
+    // and updateLoan rewrite a loan file in place and accrueInterest replaces the
+    // active one, so a method running alongside could read a half written file
+    // or have its own change written over
+
+    public static synchronized Loan getLoan(String username, String collateral, boolean isFromToBeApproved){
         File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
         if (isFromToBeApproved) {
             file = new File(LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH);
@@ -62,7 +69,7 @@ public class LoanDatabase {
         return null;
     }
 
-    public static List<Loan> getAllLoans(String username, boolean isFromToBeApproved){
+    public static synchronized List<Loan> getAllLoans(String username, boolean isFromToBeApproved){
         File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
         if (isFromToBeApproved) {
             file = new File(LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH);
@@ -106,7 +113,7 @@ public class LoanDatabase {
         return activeLoanList;
     }
 
-    public static boolean addLoanToBeApproved(String username, String collateral, double collateralAmount, double loanAmount){
+    public static synchronized boolean addLoanToBeApproved(String username, String collateral, double collateralAmount, double loanAmount){
         // Add the given loan request to the database "to be approved"
         File file = new File(LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH);
         boolean fileExists = file.exists();
@@ -143,7 +150,7 @@ public class LoanDatabase {
 
     }
 
-    public static boolean addLoantoActiveList(String username, String collateral, double loanAmount){
+    public static synchronized boolean addLoantoActiveList(String username, String collateral, double loanAmount){
         // Remove the given loan request from the database "to be approved"
         if(!(new File(LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH).exists())) {
             // If it does not exist, that's bad
@@ -202,7 +209,7 @@ public class LoanDatabase {
 
     }
 
-    public static boolean rejectLoan(String username, String collateral){
+    public static synchronized boolean rejectLoan(String username, String collateral){
         // Remove the given loan request from the database "to be approved"
         File file = new File(LOAN_N_COLLATERAL_TOBEAPPROVED_CSV_FILEPATH);
         boolean fileExists = file.exists();
@@ -242,7 +249,7 @@ public class LoanDatabase {
     }
 
     // Loan Close
-    public static boolean closeLoan(String username, String collateral, Currency payment){
+    public static synchronized boolean closeLoan(String username, String collateral, Currency payment){
         // Remove the given loan request from the database "activeList"
         File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
         boolean fileExists = file.exists();
@@ -289,7 +296,7 @@ public class LoanDatabase {
     }
 
     // loan update
-    public static boolean updateLoan(String username, String collateral, double interest){
+    public static synchronized boolean updateLoan(String username, String collateral, double interest){
         // Change the loanAmount for a given loan based on the amount
         File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
 
@@ -303,23 +310,21 @@ public class LoanDatabase {
                 boolean loanFound = false;
                 List<String[]> loans =  reader.readAll();
 
-                Iterator<String[]> iterator = loans.iterator();
-                while (iterator.hasNext()) {
-                    line = iterator.next();
+                for (String[] loan : loans) {
+                    line = loan;
                     if (line[0].equals(username) && line[1].equals(collateral)) {
                         // update the loanAmount based on interest
                         double price = Double.parseDouble(line[2]) + interest;
                         line[2] = String.valueOf(price);
-                        iterator.remove();
                         loanFound = true;
                         break;
                     }
                 }
 
                 if (loanFound) {
-                    // Write the updated data back to the CSV file
+                    // Write all loans back, not only the updated one
                     try (CSVWriter writer = new CSVWriter(new FileWriter(file))) {
-                        writer.writeNext(line);
+                        writer.writeAll(loans);
                     }
                     return true; // Loan updated successfully
                 } else {
@@ -332,8 +337,45 @@ public class LoanDatabase {
         }
     }
 
+    // Month-end accrual: streams the active loans once, adds rate * loanAmount
+    // to every loan and replaces the file atomically, so either all loans
+    // get their interest or none do. Returns the number of loans updated.
+    public static synchronized int accrueInterest(double rate) {
+        File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
+        if (!file.exists()) {
+            return 0;
+        }
+        File tmp = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH + ".tmp");
+        int updated = 0;
+        try (CSVReader reader = new CSVReader(new FileReader(file));
+                CSVWriter writer = new CSVWriter(new FileWriter(tmp))) {
+            String[] loan;
+            while ((loan = reader.readNext()) != null) {
+                if (loan.length >= 3 && !loan[0].equals("")) {
+                    double loanAmount = Double.parseDouble(loan[2]);
+                    loan[2] = String.valueOf(loanAmount + loanAmount * rate);
+                    updated++;
+                }
+                writer.writeNext(loan);
+            }
+        } catch (IOException | CsvException | NumberFormatException e) {
+            // Including a malformed amount: the file is left as it was, so a retry charges no loan twice
+            e.printStackTrace();
+            tmp.delete();
+            return 0;
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return updated;
+    }
+
     // Interest
-    public static void addInterest(String username) {
+    public static synchronized void addInterest(String username) {
         File file = new File(LOAN_N_COLLATERAL_ACTIVE_CSV_FILEPATH);
 
         if (file.exists()) {
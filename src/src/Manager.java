@@ -15,31 +15,36 @@
   */
 
 package src;
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 public class Manager extends User implements SecuritySubject{
     List<Customer> customerList;
-    List<SecurityObserver> stockCustomersList;
-    private List<Transaction> transactionList;
+    // username -> observers for that customer. A stock change is only sent
+    // to the observers of customers holding the stock
+    Map<String, List<SecurityObserver>> stockCustomersList;
+    // Observers not tied to a customer, these hear about every stock change
+    private List<SecurityObserver> unboundObservers = new CopyOnWriteArrayList<>();
+    // Delivers stock changes to the observers off the caller's thread
+    private final StockEventBus stockEventBus = new StockEventBus();
     public List<Stock> stocksList;
     private static Manager manager;
     private static String managerUsername = "Manager";
 
     public static final int MANAGER_ACCOUNT = 3;
 
-    public static Manager getSingletonManager() {
+    public static synchronized Manager getSingletonManager() {
         if (manager == null) {
             manager = ManagerDatabase.getManager(managerUsername);
         }
         return manager;
     }
 
-    public Manager(String username, List<Customer> customerList, List<Transaction> transactionList, List<Stock> stocksList) {
+    public Manager(String username, List<Customer> customerList, List<Stock> stocksList) {
         super(username);
         this.customerList = customerList;
-        this.transactionList = transactionList;
         this.stocksList = stocksList;
-        this.stockCustomersList = new ArrayList<>();
+        this.stockCustomersList = new ConcurrentHashMap<>();
         initStockCustomersList();
     }
 
@@ -47,7 +52,7 @@ public class Manager extends User implements SecuritySubject{
         for (Customer c : customerList) {
             for (Account a : c.getAccounts().values()) {
                 if (a.getAccountType() == Account.SECURITIES_ACCOUNT) {
-                    stockCustomersList.add((SecurityObserver)a);
+                    addObserver(c.getUsername(), (SecurityObserver)a);
                     break;
                 }
             }
@@ -63,24 +68,14 @@ public class Manager extends User implements SecuritySubject{
     }
 
     public List<Account> getAllCustomerAccountType(int accountType) {
-        List<Account> ls = new ArrayList<>();
-        customerList = CustomerDatabase.getAllCustomers();
-        for (Customer c : customerList) {
-            ls.add(c.getBankAccount(accountType));
-        }
-        return ls;
+        // One pass over the accounts AccountTable keeps in memory
+        return CustomerDatabase.getAllAccounts(accountType);
     }
 
     // Gets daily report as specified in prompt
     public List<Transaction> dailyReport() {
-        LocalDate today = CustomerDatabase.getDate();
-        List<Transaction> ls = new ArrayList<>();
-        for (Transaction t : transactionList) {
-            if (Transaction.isSameDay(today, t)) {
-                ls.add(t);
-            }
-        }
-        return ls;
+        // Only today's rows of the transaction log are read
+        return TransactionDatabase.getTransactionsOn(CustomerDatabase.getDate());
     }
 
     public List<Loan> getPendingLoans(){
@@ -109,6 +104,12 @@ public class Manager extends User implements SecuritySubject{
         TransactionDatabase.createTransaction(tx);
     }
 
+    // Sets how many units of currencyType one dollar buys. Conversions
+    // started after this call use the new rate
+    public boolean updateExchangeRate(int currencyType, double unitsPerDollar) {
+        return ExchangeRates.setUnitsPerDollar(currencyType, unitsPerDollar);
+    }
+
     public List<Stock> getStocksList() {
         return StockDatabase.getAllStocks();
         //return stocksList;
@@ -123,15 +124,9 @@ public class Manager extends User implements SecuritySubject{
                 // if Price of stock is negative then that means the stock has been deleted
     }
 
+    // Served from the resident quote table, no file access
     public Stock getStock(String stockName){
-        Stock result = null;
-        List<Stock> stockList = StockDatabase.getAllStocks();
-        for (Stock stock : stockList){
-            if (stock.getName().equals(stockName)){
-                result = stock;
-            }
-        }
-        return result;
+        return StockDatabase.getStock(stockName);
     }
 
     public boolean addStock(Stock stock) {
@@ -143,40 +138,74 @@ public class Manager extends User implements SecuritySubject{
         }
     }
 
+    // Delisting sells all holders' shares at the last price in one batch,
+    // observers of the former holders are then told the stock is gone
     public boolean removeStock(String name) {
-        if (StockDatabase.removeStock(name)) {
-            for (Stock s : stocksList) {
-                if ((s.getName()).equals(name)) {
-                    notifyObservers(new Stock(s.getName(), -1*s.getPrice()));
-                    stocksList.remove(s);
-                    return true;
-                }
-            }
+        Stock delisted = StockDatabase.getStock(name);
+        if (delisted != null && StockDatabase.removeStock(name)) {
+            Set<String> holders = new StockLiquidationJob(delisted).run();
+            notifyHolders(new Stock(name, -1*delisted.getPrice()), holders);
+            stocksList.removeIf(s -> s.getName().equals(name));
+            return true;
         }
         return false;
     }
 
+    // Throughput and delivery lag of stock change notifications so far
+    public String getStockEventMetrics() {
+        return stockEventBus.getMetricsSummary();
+    }
+
+    // Accounts are registered under their owner, anything else hears every change
     public void addObserver(SecurityObserver observer) {
-        if (stockCustomersList == null) {
-            stockCustomersList = new ArrayList<>();
+        if (observer instanceof Account) {
+            addObserver(((Account) observer).getUsername(), observer);
+        } else {
+            unboundObservers.add(observer);
         }
-        stockCustomersList.add(observer);
     }
+
+    public void addObserver(String username, SecurityObserver observer) {
+        stockCustomersList.computeIfAbsent(username, k -> new CopyOnWriteArrayList<>()).add(observer);
+    }
+
     public void removeObserver(SecurityObserver observer) {
-        if (stockCustomersList != null) {
-            stockCustomersList.remove(observer);
+        unboundObservers.remove(observer);
+        for (List<SecurityObserver> observers : stockCustomersList.values()) {
+            observers.remove(observer);
         }
     }
+
+    // Looks up who holds the stock in the holders index and queues the change
+    // for their observers only. Returns once the change is queued
     public void notifyObservers(Stock stock) {
-        if (stockCustomersList != null) {
-//            System.out.println("Here at notifyObservers, we have a customer");
-//            System.out.println("Here at notifyObservers, we are trying to notify: " + ((Account)stockCustomersList.get(0)).getUsername());
-            for (SecurityObserver observer : stockCustomersList) {
-//                System.out.println("Here at notifyObservers, we are trying to notify: " + ((Account) observer).getUsername());
-                observer.update(stock);
-            }
+        notifyHolders(stock, StockDatabase.getHolders(stock.getName()));
+    }
+
+    // Holders also get a message in their mailbox, written in one batch
+    private void notifyHolders(Stock stock, Collection<String> holders) {
+        List<String> messages = new ArrayList<>();
+        messages.add("UPDATE: " + stock.getName() + " stock has been changed.");
+        if (stock.getPrice() >= 0) {
+            messages.add(stock.getName() + " has been updated to $" + stock.getPrice() + "!!");
         } else {
-            System.out.println("Warning: stockCustomersList is not initialized.");
+            messages.add(stock.getName() + " has been removed, all your shares were sold!");
+        }
+        Map<String, List<String>> mailbox = new HashMap<>();
+        for (String holder : holders) {
+            mailbox.put(holder, messages);
+        }
+        MessageDatabase.writeMessages(mailbox);
+
+        List<SecurityObserver> observers = new ArrayList<>(unboundObservers);
+        for (String holder : holders) {
+            List<SecurityObserver> holderObservers = stockCustomersList.get(holder);
+            if (holderObservers != null) {
+                observers.addAll(holderObservers);
+            }
+        }
+        if (!observers.isEmpty()) {
+            stockEventBus.publish(stock, observers);
         }
     }
 }
@@ -4,8 +4,9 @@
   * 5/2/2024
   *
   * Gets current instance of manager which contains all instances
-  * manager should know about such as all customers, all transactions,
-  * and all stocks. Also supports manager login.
+  * manager should know about such as all customers and all stocks.
+  * Transactions are not loaded, they are read from TransactionDatabase
+  * when needed. Also supports manager login.
   */
 
 package src;
@@ -18,8 +19,7 @@ public class ManagerDatabase {
     
     public static Manager getManager(String username) {
         List<Customer> customerList = CustomerDatabase.getAllCustomers();
-        List<Transaction> transactionList = TransactionDatabase.getAllTransactions();
         List<Stock> stocksList = StockDatabase.getAllStocks();
-        return new Manager(username, customerList, transactionList, stocksList);
+        return new Manager(username, customerList, stocksList);
     }
 }
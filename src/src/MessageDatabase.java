@@ -1,47 +1,139 @@
+/*
+  * MessageDatabase.java
+  *
+  * Notifications for customers. Every customer has an append-only mailbox
+  * (messages_<username>.csv) and a read cursor, the byte offset up to which
+  * the customer has acknowledged their messages. Cursors are kept in
+  * messageCursors.csv. Reading new messages seeks to the cursor, so it only
+  * costs the unread messages, and customers never see each other's messages.
+  */
+
 package src;
 
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
+import com.opencsv.exceptions.CsvException;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 
 public class MessageDatabase {
-    private static final String MESSAGES_FILE_PATH = "messages.csv";
+    private static final String MAILBOX_PREFIX = "messages_";
+    private static final String MAILBOX_SUFFIX = ".csv";
+    public static final String MESSAGE_CURSORS_CSV_FILEPATH = "messageCursors.csv";
+
+    // username -> acknowledged offset in the mailbox, persisted
+    private static Map<String, Long> cursors;
+    // username -> end of the last read, becomes the cursor when messages are cleared
+    private static final Map<String, Long> readOffsets = new HashMap<>();
+
+    public static void writeMessages(String username, List<String> messages) {
+        Map<String, List<String>> messagesByUser = new HashMap<>();
+        messagesByUser.put(username, messages);
+        writeMessages(messagesByUser);
+    }
 
-    public static void writeMessages(List<String> messages) {
-        // Append messages to the CSV file
-        try (CSVWriter writer = new CSVWriter(new FileWriter(MESSAGES_FILE_PATH, true))) {
-            for (String message : messages) {
-                writer.writeNext(new String[]{message});
+    // Appends to many mailboxes at once, opening each mailbox once
+    public static synchronized void writeMessages(Map<String, List<String>> messagesByUser) {
+        for (Map.Entry<String, List<String>> entry : messagesByUser.entrySet()) {
+            try (CSVWriter writer = new CSVWriter(new FileWriter(mailboxFilePath(entry.getKey()), true))) {
+                for (String message : entry.getValue()) {
+                    writer.writeNext(new String[]{message});
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    public static List<String> readMessages() {
+    // Messages of username that were not cleared yet, oldest first
+    public static synchronized List<String> readMessages(String username) {
         List<String> messages = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(MESSAGES_FILE_PATH))) {
-            String[] nextLine;
-            while ((nextLine = reader.readNext()) != null) {
-                if (nextLine.length > 0) {
-                    messages.add(nextLine[0]);
+        File mailbox = new File(mailboxFilePath(username));
+        if (!mailbox.exists()) {
+            return messages;
+        }
+        long cursor = getCursors().getOrDefault(username, 0L);
+        try (RandomAccessFile file = new RandomAccessFile(mailbox, "r")) {
+            long end = file.length();
+            if (cursor >= end) {
+                readOffsets.put(username, end);
+                return messages;
+            }
+            byte[] unread = new byte[(int) (end - cursor)];
+            file.seek(cursor);
+            file.readFully(unread);
+            try (CSVReader reader = new CSVReader(new StringReader(new String(unread, StandardCharsets.UTF_8)))) {
+                String[] nextLine;
+                while ((nextLine = reader.readNext()) != null) {
+                    if (nextLine.length > 0 && !nextLine[0].isEmpty()) {
+                        messages.add(nextLine[0]);
+                    }
                 }
             }
-        } catch (IOException | CsvValidationException e) {
+            readOffsets.put(username, end);
+        } catch (IOException | CsvException e) {
             e.printStackTrace();
         }
         return messages;
     }
 
-    public static void clearMessages() {
-        // Clear the content of the CSV file
-        try (CSVWriter writer = new CSVWriter(new FileWriter(MESSAGES_FILE_PATH))) {
-            writer.writeNext(new String[]{""});
+    // Marks the messages returned by the last read as seen. Messages that
+    // arrived after that read stay unread
+    public static synchronized void clearMessages(String username) {
+        Long offset = readOffsets.get(username);
+        if (offset == null) {
+            return;
+        }
+        getCursors().put(username, offset);
+        saveCursors();
+    }
+
+    private static String mailboxFilePath(String username) {
+        return MAILBOX_PREFIX + URLEncoder.encode(username, StandardCharsets.UTF_8) + MAILBOX_SUFFIX;
+    }
+
+    private static Map<String, Long> getCursors() {
+        if (cursors == null) {
+            cursors = new HashMap<>();
+            if (new File(MESSAGE_CURSORS_CSV_FILEPATH).exists()) {
+                try (CSVReader reader = new CSVReader(new FileReader(MESSAGE_CURSORS_CSV_FILEPATH))) {
+                    String[] cursor;
+                    while ((cursor = reader.readNext()) != null) {
+                        if (cursor.length == 2) {
+                            cursors.put(cursor[0], Long.parseLong(cursor[1]));
+                        }
+                    }
+                } catch (IOException | CsvException | NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return cursors;
+    }
+
+    // Written to a temporary file first so a crash never loses every cursor
+    private static void saveCursors() {
+        File tmp = new File(MESSAGE_CURSORS_CSV_FILEPATH + ".tmp");
+        try (CSVWriter writer = new CSVWriter(new FileWriter(tmp))) {
+            for (Map.Entry<String, Long> entry : cursors.entrySet()) {
+                writer.writeNext(new String[]{entry.getKey(), String.valueOf(entry.getValue())});
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), new File(MESSAGE_CURSORS_CSV_FILEPATH).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,53 @@
+/*
+  * Money.java
+  *
+  * Fixed-point helpers for amounts held as a long count of minor units
+  * (hundredths of a dollar, yuan or won). Currency, Account and AccountTable
+  * keep their amounts in minor units so that repeated deposits and interest
+  * postings do not drift the way summed doubles do, and so that converting
+  * and totalling balances needs no temporary Currency objects. The CSV files
+  * keep plain decimal strings; format and parse convert at that boundary.
+  */
+
+package src;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public final class Money {
+    public static final int DECIMALS = 2;
+    public static final long MINOR_UNITS = 100;
+
+    private Money() {
+    }
+
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * MINOR_UNITS);
+    }
+
+    public static double toAmount(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS;
+    }
+
+    // Converts minor units between currencies at the current rates
+    public static long exchange(long minorUnits, int currencyType, int targetCurrencyType) {
+        return ExchangeRates.exchange(minorUnits, currencyType, targetCurrencyType);
+    }
+
+    public static long toDollars(long minorUnits, int currencyType) {
+        return exchange(minorUnits, currencyType, Currency.DOLLARS);
+    }
+
+    public static long applyRate(long minorUnits, double rate) {
+        return Math.round(minorUnits * rate);
+    }
+
+    public static String format(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, DECIMALS).toPlainString();
+    }
+
+    // Accepts anything Double.parseDouble wrote before, such as "1.0E7"
+    public static long parse(String amount) {
+        return new BigDecimal(amount.trim()).movePointRight(DECIMALS).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+}
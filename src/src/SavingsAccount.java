@@ -14,8 +14,6 @@ package src;
 import java.util.*;
 
 public class SavingsAccount extends Account{
-    Bank bank = Bank.getSingletonBank();
-
     public SavingsAccount(Map<Integer, Currency> currencies, String username){
         super(currencies, username);
         super.accountType = Account.SAVINGS_ACCOUNT;
@@ -45,12 +43,12 @@ public class SavingsAccount extends Account{
     }
 
     public boolean withdraw(String username, Currency money, boolean toSelf) {
-        Customer currentCustomer = bank.getCurrentCustomer();
         if (super.withdraw(username, money, toSelf)) {
             // If user drops below certain amount in Savings, disable their security account
-            // if they have one
-            if (username.equals(currentCustomer.getUsername()) && getBalance() < SecurityAccount.ELIGIBLE_TO_KEEP_OPEN_SAVINGS_BALANCE) {
-                Account acc = currentCustomer.getBankAccount(SECURITIES_ACCOUNT);
+            // if they have one. The owner is looked up by username rather than taken
+            // from a logged in customer, as several sessions may be active at once
+            if (getBalance() < SecurityAccount.ELIGIBLE_TO_KEEP_OPEN_SAVINGS_BALANCE) {
+                Account acc = CustomerDatabase.getCustomer(username).getBankAccount(SECURITIES_ACCOUNT);
                 if (acc != null) {
                     SecurityAccount secAcc = (SecurityAccount) acc;
                     secAcc.disable();
@@ -53,25 +53,23 @@ public class SecurityAccount extends Account implements SecurityObserver {
     }
 
     public boolean buyStock(String stock, int amount){
-        List<Stock> stockList = Manager.getSingletonManager().stocksList;
-        // look through possible stocks, if you see the stock 
-        for (Stock currStock : stockList){
-            if (stock.equals(currStock.getName())){
-                // if the stock is found
-                // if balance >= stock.price then buy the stock and add it to portfolio
-                if (this.balance >= currStock.getPrice() * amount){
-                    // decrease account currencies 
-                    this.withdraw(username, new Currency(currStock.getPrice() * amount, Currency.DOLLARS), true);
-                    // add stock to the portfolio
-                    for (int i = 0; i < amount; i++) {
-                        this.stockPortfolio.addStock(username, currStock);
-                    }
-                    this.stockPortfolioValue = stockPortfolio.updatePortfolioValue(username);
-
-                    this.unrealizedProfits = stockPortfolio.updateUnrealizedProfit(username);
-                    TransactionDatabase.createStockTransaction(new StockTransaction(getUsername(), currStock.getName(), currStock.getPrice(), amount, true));
-                    return true;
+        // look up the current quote of the stock
+        Stock currStock = Manager.getSingletonManager().getStock(stock);
+        if (currStock != null){
+            // if the stock is found
+            // if balance >= stock.price then buy the stock and add it to portfolio
+            if (getBalance() >= currStock.getPrice() * amount){
+                // decrease account currencies 
+                if (!this.withdraw(username, new Currency(currStock.getPrice() * amount, Currency.DOLLARS), true)) {
+                    return false;
                 }
+                // add all shares to the portfolio at once
+                this.stockPortfolio.addStock(username, currStock, amount);
+                this.stockPortfolioValue = stockPortfolio.updatePortfolioValue(username);
+
+                this.unrealizedProfits = stockPortfolio.updateUnrealizedProfit(username);
+                TransactionDatabase.createStockTransaction(new StockTransaction(getUsername(), currStock.getName(), currStock.getPrice(), amount, true));
+                return true;
             }
         }
         return false;
@@ -135,19 +133,15 @@ public class SecurityAccount extends Account implements SecurityObserver {
         return this.stockPortfolioValue;
     }
 
-    // Observer notify method, which is called by the Manager.
+    // Observer notify method, which is called by the Manager's stock event bus,
+    // possibly for several stocks at once
     @Override
-    public void update(Stock stock){
+    public synchronized void update(Stock stock){
         if (stock.getPrice() >= 0){
             System.out.println(stock.getName() + " has been updated to $" + stock.getPrice() + "!");
         } else {
-            // immediately sell off the stock
-            List<Double> profits = this.stockPortfolio.removeStock(username, new Stock(stock.getName(), -1*stock.getPrice()), -1);
-            double realizedProfit = profits.get(0);
-            double initalCosts = profits.get(1);
-            double totalProfits = (realizedProfit + initalCosts);
-            System.out.println("Stock sold! Here is the total profit: " + totalProfits);
-            deposit(username, new Currency((realizedProfit + initalCosts), Currency.DOLLARS), true);
+            // The Manager already sold the shares of all holders, see StockLiquidationJob
+            System.out.println(stock.getName() + " was delisted, shares sold at $" + (-1*stock.getPrice()) + "!");
         }
         // update the unrealized profit and portfolio value
         this.unrealizedProfits = stockPortfolio.updateUnrealizedProfit(username);
@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.*;
 
 import com.opencsv.CSVReader;
@@ -22,175 +23,100 @@ import com.opencsv.exceptions.CsvException;
 
 public class StockDatabase {
     public static final String STOCK_PRICE_CSV_FILEPATH = "stockPrice.csv";
+    // Old portfolio format (username, stock, count, price1 ... priceN), migrated into lots
     public static final String STOCK_PORTFOLIO_CSV_FILEPATH = "stockPortfolio.csv";
+    // One row per lot: username, stock, price, quantity, date
+    public static final String STOCK_LOTS_CSV_FILEPATH = "stockLots.csv";
     public static final String CUSTOMER_SECURITY_CSV_FILEPATH = "customerSecurity.csv";
+    private static boolean migrated = false;
+    private static Map<String, Map<String, Integer>> holders;
+    private static Map<String, List<String[]>> userLots;
+
+    // Realized profit is kept in the last balance column of the security account
+    public static final int REALIZED_PROFIT_COLUMN = Currency.WON;
 
     public static double getRealizedProfit(String username) {
-        boolean fileExists = new File (CUSTOMER_SECURITY_CSV_FILEPATH).exists();
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-                List<String[]> accounts = reader.readAll();
-                for (String[] acc : accounts) {
-                    if (username.equals(acc[0])) {
-                        return Double.parseDouble(acc[3]);
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
+        double[] amounts = AccountTable.getBalances(Account.SECURITIES_ACCOUNT, username);
+        if (amounts != null) {
+            return amounts[REALIZED_PROFIT_COLUMN];
         }
         return -1;
     }
 
-    public static boolean updateRealizedProfit(String username, double realizedProfit) {
-        boolean fileExists = new File(CUSTOMER_SECURITY_CSV_FILEPATH).exists();
-        List<String[]> accounts = null;
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-                accounts = reader.readAll();
-                for (String[] acc : accounts) {
-                    if (username.equals(acc[0])) {
-                        acc[3] = String.valueOf(Double.parseDouble(acc[3]) + realizedProfit);
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_SECURITY_CSV_FILEPATH))) {
-            writer.writeAll(accounts);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
-
-
+    public static synchronized boolean updateRealizedProfit(String username, double realizedProfit) {
+        return AccountTable.addToBalance(Account.SECURITIES_ACCOUNT, username, REALIZED_PROFIT_COLUMN, realizedProfit);
     }
 
-    public static Set<String> getAllUsernames() {
-        Set<String> hs = new HashSet<>();
-        boolean fileExists = new File(STOCK_PORTFOLIO_CSV_FILEPATH).exists();
-
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                for (String[] stock : stocks) {
-                    if (!hs.contains(stock[0])) {
-                        hs.add(stock[0]);
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
-        }
-        return hs;
+    // Usernames currently holding shares of stockName, from the holders index
+    public static synchronized Set<String> getHolders(String stockName) {
+        Map<String, Integer> shares = getHoldersIndex().get(stockName);
+        return shares == null ? new HashSet<>() : new HashSet<>(shares.keySet());
     }
 
-    public static Stock getStock(String stockName) {
-        boolean fileExists = new File(STOCK_PRICE_CSV_FILEPATH).exists();
-        
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PRICE_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                for (String[] stock : stocks) {
-                    if (stock[0].equals(stockName)) {
-                        return new Stock(stock[0], Double.parseDouble(stock[1]));
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
+    // username -> (stock name -> shares held) for every customer holding shares,
+    // sorted by username and stock name. One pass over the holders index, no
+    // lots are read
+    public static synchronized TreeMap<String, TreeMap<String, Integer>> getAllHoldings() {
+        TreeMap<String, TreeMap<String, Integer>> holdings = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Integer>> stock : getHoldersIndex().entrySet()) {
+            for (Map.Entry<String, Integer> holder : stock.getValue().entrySet()) {
+                holdings.computeIfAbsent(holder.getKey(), k -> new TreeMap<>()).put(stock.getKey(), holder.getValue());
             }
         }
-        return null;
+        return holdings;
     }
 
-    public static StockDetails getStockFromPortfolio(String username, String stockName){
-        boolean fileExists = new File(STOCK_PORTFOLIO_CSV_FILEPATH).exists();
-        
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                List<Double> initPrices = new ArrayList<Double>();
-                for (String[] stock : stocks) {
-                    if (stock[0].equals(username) && stock[1].equals(stockName)) {
-                        for (int i = 3; i < stock.length; i++){
-                            initPrices.add(Double.parseDouble(stock[i]));
-                        }
-                        return new StockDetails(stock[1], Integer.parseInt(stock[2]), initPrices);
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
+    // stock name -> shares held by all customers together
+    public static synchronized TreeMap<String, Integer> getTotalShares() {
+        TreeMap<String, Integer> totals = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Integer>> stock : getHoldersIndex().entrySet()) {
+            int total = 0;
+            for (int shares : stock.getValue().values()) {
+                total += shares;
             }
+            totals.put(stock.getKey(), total);
         }
-        return null;
-        
+        return totals;
     }
 
-    public static List<Stock> getAllStocks() {
-        boolean fileExists = new File(STOCK_PRICE_CSV_FILEPATH).exists();
+    // Prices are served from StockQuotes, which mirrors stockPrice.csv in memory
+    public static Stock getStock(String stockName) {
+        return StockQuotes.get(stockName);
+    }
 
-        List<Stock> ls = new ArrayList<>();
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PRICE_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                for (String[] stock : stocks) {
-                    ls.add(new Stock(stock[0], Double.parseDouble(stock[1])));
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
+    public static synchronized StockDetails getStockFromPortfolio(String username, String stockName){
+        List<StockLot> lots = new ArrayList<>();
+        int amount = 0;
+        for (String[] lot : getUserLots(username)) {
+            if (lot[1].equals(stockName)) {
+                StockLot stockLot = toStockLot(lot);
+                lots.add(stockLot);
+                amount += stockLot.getQuantity();
             }
         }
-        return ls;
+        if (lots.isEmpty()) {
+            return null;
+        }
+        return new StockDetails(stockName, amount, lots);
     }
 
-    public static List<StockDetails> getAllStocksFromPortfolio(String username){
-        boolean fileExists = new File(STOCK_PORTFOLIO_CSV_FILEPATH).exists();
-
-        List<StockDetails> ls = new ArrayList<>();
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                for (String[] stock : stocks) {
-                    if (stock[0].equals(username)) {
-                        ls.add(new StockDetails(stock[1], Integer.parseInt(stock[2]), null));
-                    }
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
-        }
-        return ls;
+    public static List<Stock> getAllStocks() {
+        return StockQuotes.getAll();
     }
 
-    public static HashMap<String, List<Double>> getAllInitPrices(String username) {
-        boolean fileExists = new File(STOCK_PORTFOLIO_CSV_FILEPATH).exists();
-        if (fileExists) {
-            HashMap<String, List<Double>> prices = new HashMap<>();
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                List<String[]> stocks = reader.readAll();
-                for (String[] stock : stocks) {
-                    if (stock[0].equals(username)) {
-                        // Get all initPrices for that line
-                        int length = stock.length;
-                        List<Double> initPrices = new ArrayList<Double>();
-                        for (int i = 3; i < length; i++) {
-                            initPrices.add(Double.parseDouble(stock[i]));
-                        }
-                        prices.put(stock[1], initPrices); // Assuming stock[1] contains the stock name
-                    }
-                }
-                return prices;
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
+    // stock name -> {shares held, total cost of those shares}, summed over lots
+    public static synchronized HashMap<String, double[]> getLotAggregates(String username) {
+        HashMap<String, double[]> aggregates = new HashMap<>();
+        for (String[] lot : getUserLots(username)) {
+            int quantity = Integer.parseInt(lot[3]);
+            double[] aggregate = aggregates.computeIfAbsent(lot[1], k -> new double[2]);
+            aggregate[0] += quantity;
+            aggregate[1] += Double.parseDouble(lot[2]) * quantity;
         }
-        return null;
+        return aggregates;
     }
 
-    public static boolean addStock(Stock stock) {
+    public static synchronized boolean addStock(Stock stock) {
         List<String[]> stocks = new ArrayList<>();
     
         File file = new File(STOCK_PRICE_CSV_FILEPATH);
@@ -220,6 +146,7 @@ public class StockDatabase {
         try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_PRICE_CSV_FILEPATH, true))) {
             String[] s = {stock.getName(), String.valueOf(stock.getPrice())};
             writer.writeNext(s);
+            StockQuotes.put(stock.getName(), stock.getPrice());
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -228,56 +155,34 @@ public class StockDatabase {
     }
 
 
-    public static boolean addStockToPortfolio(String username, Stock stock) {
-        File file = new File(STOCK_PORTFOLIO_CSV_FILEPATH);
-            if (!file.exists()) {
-                try {
-                    file.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-
-                try (CSVReader reader = new CSVReader(new FileReader(file))){
-                    List<String[]> stocks =  reader.readAll();
-                    boolean stockFound = false;
-                    String[] line = null;
-                    //int index = -1;
-                    Iterator<String[]> iterator = stocks.iterator();
-                    while (iterator.hasNext()) {
-                        String[] s = iterator.next();
-                        if (s[0].equals(username) && s[1].equals(stock.getName())) {
-                            line = Arrays.copyOf(s, s.length + 1);
-                            line[2] = String.valueOf(Integer.parseInt(s[2]) + 1);
-                            iterator.remove();
-                            stockFound = true;
-                            break;
-                        }
-                    }
-                    if (stockFound) {
-                        // remove the existing stock
-                        writeToPortfolio(stocks);
-                        line[line.length - 1] = String.valueOf(stock.getPrice());
-                    } else {
-                        line = new String[] {username, stock.getName(), "1", String.valueOf(stock.getPrice())};
-                    }
-                
-                    // Write the updated loan requests back to the CSV file
-                    try (CSVWriter writer = new CSVWriter(new FileWriter(file))) {
-                        stocks.add(line);
-                        writer.writeAll(stocks);
-                    }
-                }catch (IOException | CsvException e) {
-                    e.printStackTrace();
-                    return false;
-                }
+    public static synchronized boolean addStockToPortfolio(String username, Stock stock) {
+        return addStockToPortfolio(username, stock, 1);
+    }
 
-                return true;
-            
-        
+    // Records amount shares bought at stock's current price as a single lot.
+    // This is a plain append, the rest of the portfolio is never rewritten.
+    public static synchronized boolean addStockToPortfolio(String username, Stock stock, int amount) {
+        if (amount <= 0) {
+            return false;
+        }
+        migrateToLots();
+        // Built before the append so the new lot is only counted once
+        getHoldersIndex();
+        getLotsIndex();
+        try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_LOTS_CSV_FILEPATH, true))) {
+            String[] lot = {username, stock.getName(), String.valueOf(stock.getPrice()),
+                String.valueOf(amount), CustomerDatabase.getDate().toString()};
+            writer.writeNext(lot);
+            updateHolders(username, stock.getName(), amount);
+            userLots.computeIfAbsent(username, k -> new ArrayList<>()).add(lot);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
     }
 
-    public static boolean removeStock(String name) {
+    public static synchronized boolean removeStock(String name) {
         boolean fileExists = new File(STOCK_PRICE_CSV_FILEPATH).exists();
         if (!fileExists) {
             return false;
@@ -307,6 +212,7 @@ public class StockDatabase {
 
         try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_PRICE_CSV_FILEPATH))) {
             writer.writeAll(stocks);
+            StockQuotes.remove(name);
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -314,72 +220,181 @@ public class StockDatabase {
         }
     }
 
-    private static void writeToPortfolio(List<String[]> stocks){
-        try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-            writer.writeAll(stocks);
+    private static boolean writeToPortfolio(List<String[]> lots){
+        try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_LOTS_CSV_FILEPATH))) {
+            writer.writeAll(lots);
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
-    public static List<Double> removeStockFromPortfolio(String username, Stock stock, int amount){
-        List<Double> initPrices = new ArrayList<Double>();
-        for (int i = 0; i < amount; i++) {
-            double price = removeStockFromPortfolio(username, stock);
-            if (price == -1.0){
-                System.out.println("ERROR: " + username + " tried to get an invalid stock" + stock.getName());
-                return initPrices;
+    // Takes the amount oldest shares (FIFO) of stock out of the user's lots
+    // with one read and one rewrite, and returns the lots they came from.
+    // A lot that is only partly sold is split.
+    public static synchronized List<StockLot> removeStockFromPortfolio(String username, Stock stock, int amount){
+        List<StockLot> sold = new ArrayList<>();
+        if (amount <= 0) {
+            return sold;
+        }
+        getHoldersIndex();
+        List<String[]> lots = readLots();
+        int remaining = amount;
+        boolean changed = false;
+        Iterator<String[]> iterator = lots.iterator();
+        while (iterator.hasNext() && remaining > 0) {
+            String[] lot = iterator.next();
+            if (lot[0].equals(username) && lot[1].equals(stock.getName())) {
+                StockLot stockLot = toStockLot(lot);
+                int quantity = Math.min(remaining, stockLot.getQuantity());
+                sold.add(new StockLot(stockLot.getPrice(), quantity, stockLot.getDate()));
+                remaining -= quantity;
+                changed = true;
+                if (quantity == stockLot.getQuantity()) {
+                    iterator.remove();
+                } else {
+                    lot[3] = String.valueOf(stockLot.getQuantity() - quantity);
+                }
             }
-            initPrices.add(price);
         }
-        return initPrices;
+        if (remaining > 0) {
+            System.out.println("ERROR: " + username + " tried to get an invalid stock" + stock.getName());
+        }
+        if (changed && writeToPortfolio(lots)) {
+            updateHolders(username, stock.getName(), remaining - amount);
+            List<String[]> remainingLots = new ArrayList<>();
+            for (String[] lot : lots) {
+                if (lot[0].equals(username)) {
+                    remainingLots.add(lot);
+                }
+            }
+            getLotsIndex().put(username, remainingLots);
+        }
+        return sold;
     }
 
-    private static double removeStockFromPortfolio(String username, Stock stock){
-        boolean fileExists = new File(STOCK_PORTFOLIO_CSV_FILEPATH).exists();
+    // symbol -> (username -> shares held), built from the lots on first use and
+    // kept up to date as lots are added and removed
+    private static Map<String, Map<String, Integer>> getHoldersIndex() {
+        if (holders == null) {
+            Map<String, Map<String, Integer>> index = new HashMap<>();
+            for (String[] lot : readLots()) {
+                index.computeIfAbsent(lot[1], k -> new HashMap<>()).merge(lot[0], Integer.parseInt(lot[3]), Integer::sum);
+            }
+            holders = index;
+        }
+        return holders;
+    }
 
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                List<String[]> portfolioList = reader.readAll();
-                // username stockName amountofStock initalStockPrice1 ... initalStockPricei
-                double initPrice = -1.0;
-                String[] line = null;
-                
-                Iterator<String[]> iterator = portfolioList.iterator();
-                while (iterator.hasNext()) {
-                    String[] portfolio = iterator.next();
-                    if (portfolio[0].equals(username) && portfolio[1].equals(stock.getName())) {
-                        line = Arrays.copyOf(portfolio, portfolio.length - 1);
-                        line[2] = String.valueOf(Integer.parseInt(portfolio[2]) - 1);
-                        //int index = portfolio.length;
-                        initPrice = Double.parseDouble(portfolio[3]);
-                        for (int i = 0; i < portfolio.length-1; i++){
-                            if (i >= 3){
-                                line[i] = portfolio[i+1]; // Shift portfolio initprices by one
-                            }
-                        }
-                        iterator.remove();
-                        break;
-                    }
-                }
-                writeToPortfolio(portfolioList);
-                // Write the updated portfolio list back to the CSV file
-                try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_PORTFOLIO_CSV_FILEPATH))) {
-                    if (Integer.parseInt(line[2]) > 0){
-                        portfolioList.add(line);
+    // username -> that user's lots in file order, built from the lots on first
+    // use and kept up to date as lots are added and removed
+    private static Map<String, List<String[]>> getLotsIndex() {
+        if (userLots == null) {
+            Map<String, List<String[]>> index = new HashMap<>();
+            for (String[] lot : readLots()) {
+                index.computeIfAbsent(lot[0], k -> new ArrayList<>()).add(lot);
+            }
+            userLots = index;
+        }
+        return userLots;
+    }
+
+    private static List<String[]> getUserLots(String username) {
+        return getLotsIndex().getOrDefault(username, Collections.emptyList());
+    }
+
+    private static void updateHolders(String username, String stockName, int change) {
+        Map<String, Integer> shares = getHoldersIndex().computeIfAbsent(stockName, k -> new HashMap<>());
+        if (shares.merge(username, change, Integer::sum) <= 0) {
+            shares.remove(username);
+        }
+        if (shares.isEmpty()) {
+            holders.remove(stockName);
+        }
+    }
+
+    // Removes every lot of stockName with one read and one rewrite of the lots
+    // file. Returns username -> lots removed, empty if nobody held the stock
+    public static synchronized LinkedHashMap<String, List<StockLot>> liquidateStock(String stockName) {
+        LinkedHashMap<String, List<StockLot>> sold = new LinkedHashMap<>();
+        getHoldersIndex();
+        List<String[]> lots = readLots();
+        Iterator<String[]> iterator = lots.iterator();
+        while (iterator.hasNext()) {
+            String[] lot = iterator.next();
+            if (lot[1].equals(stockName)) {
+                sold.computeIfAbsent(lot[0], k -> new ArrayList<>()).add(toStockLot(lot));
+                iterator.remove();
+            }
+        }
+        if (sold.isEmpty()) {
+            return sold;
+        }
+        if (!writeToPortfolio(lots)) {
+            return new LinkedHashMap<>();
+        }
+        holders.remove(stockName);
+        for (String username : sold.keySet()) {
+            getUserLots(username).removeIf(lot -> lot[1].equals(stockName));
+        }
+        return sold;
+    }
+
+    private static StockLot toStockLot(String[] lot) {
+        return new StockLot(Double.parseDouble(lot[2]), Integer.parseInt(lot[3]), LocalDate.parse(lot[4]));
+    }
+
+    private static synchronized List<String[]> readLots() {
+        migrateToLots();
+        if (!new File(STOCK_LOTS_CSV_FILEPATH).exists()) {
+            return new ArrayList<>();
+        }
+        try (CSVReader reader = new CSVReader(new FileReader(STOCK_LOTS_CSV_FILEPATH))) {
+            List<String[]> lots = reader.readAll();
+            lots.removeIf(lot -> lot.length < 5);
+            return lots;
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    // Converts the old one-price-per-share stockPortfolio.csv into lots, folding
+    // runs of equal prices into one lot. The purchase date was never stored,
+    // so migrated lots are dated today.
+    private static void migrateToLots() {
+        if (migrated) {
+            return;
+        }
+        migrated = true;
+        File legacy = new File(STOCK_PORTFOLIO_CSV_FILEPATH);
+        if (!legacy.exists() || new File(STOCK_LOTS_CSV_FILEPATH).exists()) {
+            return;
+        }
+        List<String[]> lots = new ArrayList<>();
+        String today = CustomerDatabase.getDate().toString();
+        try (CSVReader reader = new CSVReader(new FileReader(legacy))) {
+            for (String[] stock : reader.readAll()) {
+                int i = 3;
+                while (i < stock.length) {
+                    int run = 1;
+                    while (i + run < stock.length && stock[i + run].equals(stock[i])) {
+                        run++;
                     }
-                    writer.writeAll(portfolioList);
+                    lots.add(new String[] {stock[0], stock[1], stock[i], String.valueOf(run), today});
+                    i += run;
                 }
-                return initPrice;
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                
             }
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return;
         }
-        return -1;
+        writeToPortfolio(lots);
+        legacy.renameTo(new File(STOCK_PORTFOLIO_CSV_FILEPATH + ".migrated"));
     }
 
-    public static boolean updateStockPrice(String name, double newPrice) {
+    public static synchronized boolean updateStockPrice(String name, double newPrice) {
         boolean fileExists = new File(STOCK_PRICE_CSV_FILEPATH).exists();
         List<String[]> stocks;
         if (fileExists) {
@@ -407,6 +422,7 @@ public class StockDatabase {
     
         try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_PRICE_CSV_FILEPATH))) {
             writer.writeAll(stocks);
+            StockQuotes.put(name, newPrice);
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -9,7 +9,8 @@
   * what price a customer bought a number of stocks at (this is necessary for)
   * accurate unrealized profits and realized profits calculations. Having one price
   * won't work (i.e. Customer buys 1 share at 50$, another at 100$, and the stock is now
-  * worth 200$.) Profit calculation would need a history of both prices.
+  * worth 200$.) Profit calculation would need a history of both prices, which is kept
+  * as a list of StockLots.
   */
 
 
@@ -19,12 +20,13 @@ import java.util.*;
 public class StockDetails {
     String name;
     int amount;
-    List<Double> initPrices = new ArrayList<Double>();
+    // Lots in the order they were bought (oldest first)
+    List<StockLot> lots = new ArrayList<StockLot>();
 
-    public StockDetails(String name, int amount, List<Double> initPrices) {
+    public StockDetails(String name, int amount, List<StockLot> lots) {
         this.name = name;
         this.amount = amount;
-        this.initPrices = initPrices;
+        this.lots = lots;
     }
 
     public String getName() {
@@ -35,9 +37,18 @@ public class StockDetails {
         return amount;
     }
 
-    public double getNextPrice(){
-        double price = initPrices.get(0);
-        initPrices.remove(0);
-        return price;
+    public List<StockLot> getLots() {
+        return lots;
+    }
+
+    // Total price paid for all shares held
+    public double getCostBasis() {
+        double cost = 0;
+        if (lots != null) {
+            for (StockLot lot : lots) {
+                cost += lot.getCost();
+            }
+        }
+        return cost;
     }
 }
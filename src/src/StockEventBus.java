@@ -0,0 +1,204 @@
+/*
+  * StockEventBus.java
+  *
+  * Delivers stock changes from the Manager to SecurityObservers off the
+  * manager's thread. Events are queued per stock symbol and each symbol is
+  * drained by one task at a time, so a symbol's events arrive in order.
+  * Price updates that pile up for a symbol before it is drained are
+  * coalesced into the latest price; removals (negative prices) are never
+  * dropped. Each event is fanned out to its observers in parallel batches on
+  * a worker pool. Lag (time from publish to the last observer finishing) and
+  * counters are kept so delivery delays can be watched.
+  */
+
+package src;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StockEventBus {
+    private static final int MIN_BATCH_SIZE = 16;
+
+    // One stock change and who should hear about it
+    private static class StockEvent {
+        final Stock stock;
+        final List<SecurityObserver> observers;
+        final long publishedAt;
+
+        StockEvent(Stock stock, List<SecurityObserver> observers, long publishedAt) {
+            this.stock = stock;
+            this.observers = observers;
+            this.publishedAt = publishedAt;
+        }
+
+        boolean isRemoval() {
+            return stock.getPrice() < 0;
+        }
+    }
+
+    private final int workerCount;
+    // Runs one drain task per symbol with pending events
+    private final ExecutorService dispatcher;
+    // Runs the observer batches; these tasks never wait on others
+    private final ExecutorService workers;
+    // symbol -> events not delivered yet, the map holds a symbol only while it is scheduled
+    private final Map<String, Deque<StockEvent>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong totalLagNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos = 0;
+
+    public StockEventBus() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StockEventBus(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, this.workerCount / 2), daemonThreads("stock-dispatch"));
+        this.workers = Executors.newFixedThreadPool(this.workerCount, daemonThreads("stock-observer"));
+    }
+
+    // Queues stock for observers and returns immediately
+    public void publish(Stock stock, Collection<SecurityObserver> observers) {
+        StockEvent event = new StockEvent(new Stock(stock.getName(), stock.getPrice()),
+                new ArrayList<>(observers), System.nanoTime());
+        published.incrementAndGet();
+        boolean[] schedule = {false};
+        pending.compute(stock.getName(), (symbol, events) -> {
+            if (events == null) {
+                events = new ArrayDeque<>();
+                schedule[0] = true;
+            }
+            StockEvent last = events.peekLast();
+            if (last != null && !last.isRemoval() && !event.isRemoval()) {
+                // Nobody has seen the older price yet, only the latest matters
+                events.pollLast();
+                coalesced.incrementAndGet();
+                events.addLast(new StockEvent(event.stock, event.observers, last.publishedAt));
+            } else {
+                events.addLast(event);
+            }
+            return events;
+        });
+        if (schedule[0]) {
+            dispatcher.execute(() -> drain(stock.getName()));
+        }
+    }
+
+    private void drain(String symbol) {
+        while (true) {
+            StockEvent event = next(symbol);
+            if (event == null) {
+                return;
+            }
+            deliver(event);
+        }
+    }
+
+    // Next event of symbol, unscheduling the symbol once it has none left
+    private StockEvent next(String symbol) {
+        StockEvent[] next = {null};
+        pending.computeIfPresent(symbol, (key, events) -> {
+            next[0] = events.pollFirst();
+            return events.isEmpty() ? null : events;
+        });
+        return next[0];
+    }
+
+    private void deliver(StockEvent event) {
+        List<SecurityObserver> observers = event.observers;
+        int batchSize = Math.max(MIN_BATCH_SIZE, (observers.size() + workerCount - 1) / workerCount);
+        List<Future<?>> batches = new ArrayList<>();
+        for (int start = 0; start < observers.size(); start += batchSize) {
+            List<SecurityObserver> batch = observers.subList(start, Math.min(start + batchSize, observers.size()));
+            batches.add(workers.submit(() -> notifyAll(batch, event.stock)));
+        }
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        long lag = System.nanoTime() - event.publishedAt;
+        lastLagNanos = lag;
+        totalLagNanos.addAndGet(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        delivered.incrementAndGet();
+    }
+
+    private void notifyAll(List<SecurityObserver> batch, Stock stock) {
+        for (SecurityObserver observer : batch) {
+            try {
+                // Each observer gets its own copy in case it changes the stock
+                observer.update(new Stock(stock.getName(), stock.getPrice()));
+                notifications.incrementAndGet();
+            } catch (RuntimeException e) {
+                // One failing observer should not stop the others
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    // Price updates replaced by a newer price before delivery
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getNotificationCount() {
+        return notifications.get();
+    }
+
+    public int getPendingSymbolCount() {
+        return pending.size();
+    }
+
+    public double getLastLagMillis() {
+        return lastLagNanos / 1_000_000.0;
+    }
+
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    public double getAverageLagMillis() {
+        long count = delivered.get();
+        return count == 0 ? 0 : totalLagNanos.get() / 1_000_000.0 / count;
+    }
+
+    public String getMetricsSummary() {
+        return String.format("published=%d coalesced=%d delivered=%d notifications=%d pending=%d lag(ms) last=%.2f avg=%.2f max=%.2f",
+                getPublishedCount(), getCoalescedCount(), getDeliveredCount(), getNotificationCount(),
+                getPendingSymbolCount(), getLastLagMillis(), getAverageLagMillis(), getMaxLagMillis());
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,66 @@
+/*
+  * StockLiquidationJob.java
+  *
+  * Sells every holder's shares of a stock the Manager delists, at the
+  * stock's last price. All lots of the stock are removed with one rewrite
+  * of the lots file, then the proceeds and realized profits of all holders
+  * are credited to their security accounts in one AccountTable batch and
+  * the matching transactions are appended in one batch, instead of each
+  * holder selling and depositing on its own.
+  */
+
+package src;
+
+import java.util.*;
+
+public class StockLiquidationJob {
+    private final Stock stock;
+
+    // stock holds the last price before delisting
+    public StockLiquidationJob(Stock stock) {
+        this.stock = stock;
+    }
+
+    // Returns the usernames whose shares were sold
+    public Set<String> run() {
+        long start = System.currentTimeMillis();
+        LinkedHashMap<String, List<StockLot>> soldLots = StockDatabase.liquidateStock(stock.getName());
+
+        // username -> {proceeds, 0, realized profit} in minor units
+        Map<String, long[]> credits = new LinkedHashMap<>();
+        Map<String, Integer> sharesSold = new HashMap<>();
+        for (Map.Entry<String, List<StockLot>> entry : soldLots.entrySet()) {
+            String username = entry.getKey();
+            int shares = 0;
+            double cost = 0;
+            for (StockLot lot : entry.getValue()) {
+                shares += lot.getQuantity();
+                cost += lot.getCost();
+            }
+            double proceeds = stock.getPrice() * shares;
+            long[] credit = new long[3];
+            credit[Currency.DOLLARS] = Money.toMinorUnits(proceeds);
+            credit[StockDatabase.REALIZED_PROFIT_COLUMN] = Money.toMinorUnits(proceeds - cost);
+            credits.put(username, credit);
+            sharesSold.put(username, shares);
+        }
+
+        // Only holders whose account could still be credited get transactions
+        Set<String> credited = AccountTable.addToBalances(Account.SECURITIES_ACCOUNT, credits);
+        List<Transaction> transactions = new ArrayList<>();
+        List<StockTransaction> stockTransactions = new ArrayList<>();
+        for (String username : credited) {
+            int shares = sharesSold.get(username);
+            transactions.add(new Transaction(new Currency(stock.getPrice() * shares, Currency.DOLLARS), "Market", username,
+                    -1, Account.SECURITIES_ACCOUNT));
+            stockTransactions.add(new StockTransaction(username, stock.getName(), stock.getPrice(), shares, false));
+        }
+        TransactionDatabase.createTransactions(transactions);
+        TransactionDatabase.createStockTransactions(stockTransactions);
+
+        long end = System.currentTimeMillis();
+        System.out.println("[Delisting]: Sold " + stock.getName() + " for " + soldLots.size() + " holders ("
+                + credited.size() + " accounts credited) in " + (end - start) + " ms");
+        return soldLots.keySet();
+    }
+}
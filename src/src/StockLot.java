@@ -0,0 +1,39 @@
+/*
+  * StockLot.java
+  *
+  * Helper class for one lot of a stock portfolio: quantity shares of a
+  * stock bought at the same price on the same date. Portfolios are stored
+  * as lots (run-length encoded purchases) instead of one price per share,
+  * so their size grows with the number of purchases, not with share count.
+  */
+
+package src;
+import java.time.LocalDate;
+
+public class StockLot {
+    private double price;
+    private int quantity;
+    private LocalDate date;
+
+    public StockLot(double price, int quantity, LocalDate date) {
+        this.price = price;
+        this.quantity = quantity;
+        this.date = date;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public double getCost() {
+        return price * quantity;
+    }
+}
@@ -20,6 +20,11 @@ public class StockPortfolio {
         StockDatabase.addStockToPortfolio(username, stock);
     }
 
+    // Adds amount shares bought at the same price in one write
+    public boolean addStock(String username, Stock stock, int amount){
+        return StockDatabase.addStockToPortfolio(username, stock, amount);
+    }
+
     public List<Double> removeStock(String username, Stock stock, int amount) {
         // returns {realizedProfit, initalCostForStock}
         System.out.println("Here is the username in portfolio removeStock: " + username);
@@ -32,29 +37,29 @@ public class StockPortfolio {
                 return new ArrayList<>(Arrays.asList(0.0, 0.0));
             }
         }
-        List<Double> initPrices = StockDatabase.removeStockFromPortfolio(username, stock, amount);
-        double realizedProfit = calculateRealizedProfits(stock, initPrices, amount);
+        List<StockLot> soldLots = StockDatabase.removeStockFromPortfolio(username, stock, amount);
+        double realizedProfit = calculateRealizedProfits(stock, soldLots);
         System.out.println("This is the realized profit after removing stock: " + realizedProfit);
         
         List<Double> profits = new ArrayList<Double>();
         profits.add(realizedProfit);
-        profits.add(calculateTotalRevenue(initPrices));
+        profits.add(calculateTotalRevenue(soldLots));
         return profits;
     }
 
-    private double calculateTotalRevenue(List<Double> initPrices){
+    private double calculateTotalRevenue(List<StockLot> lots){
         double initCost = 0;
-        for (int i = 0; i < initPrices.size(); i++) {
-            initCost = initCost + initPrices.get(i);
+        for (StockLot lot : lots) {
+            initCost = initCost + lot.getCost();
         }
         return initCost;
     }
 
-    private double calculateRealizedProfits(Stock stock, List<Double> prices, int amount){
+    private double calculateRealizedProfits(Stock stock, List<StockLot> lots){
         double currStockPrice = stock.getPrice();
         double realizedProfits = 0;
-        for (int i = 0; i < amount; i++) {
-            realizedProfits = realizedProfits + (currStockPrice - prices.get(i));
+        for (StockLot lot : lots) {
+            realizedProfits = realizedProfits + (currStockPrice - lot.getPrice()) * lot.getQuantity();
         }
         return realizedProfits;
     }
@@ -63,34 +68,36 @@ public class StockPortfolio {
         return unrealizedProfitPerStock;
     }
 
+    // Works on the per-stock {shares, total cost} of the lots, so the cost
+    // doesn't depend on how many shares are held
     public double updateUnrealizedProfit(String username){
         double unrealizedProfit = 0;
         // Go through all stocks and calculate current price vs inital buying price
-        HashMap<String, List<Double>> initPrices = StockDatabase.getAllInitPrices(username);
-        if (initPrices != null) {
-            for (Map.Entry<String, List<Double>>  entry : initPrices.entrySet()) {
-                String stockName = entry.getKey();
-                List<Double> stockValues = entry.getValue();
-                int totalAmountofStock = stockValues.size();
-                double unrealizedP4Stock = calculateRealizedProfits(Manager.getSingletonManager().getStock(stockName), stockValues, totalAmountofStock);
-                if (unrealizedProfitPerStock.containsKey(stockName)){
-                    unrealizedProfitPerStock.remove(stockName);
-                }
-                unrealizedProfitPerStock.put(stockName, unrealizedP4Stock);
-                unrealizedProfit += unrealizedP4Stock;
+        HashMap<String, double[]> aggregates = StockDatabase.getLotAggregates(username);
+        for (Map.Entry<String, double[]> entry : aggregates.entrySet()) {
+            String stockName = entry.getKey();
+            Stock currStock = Manager.getSingletonManager().getStock(stockName);
+            if (currStock == null) {
+                continue;
             }
+            double shares = entry.getValue()[0];
+            double cost = entry.getValue()[1];
+            double unrealizedP4Stock = currStock.getPrice() * shares - cost;
+            unrealizedProfitPerStock.put(stockName, unrealizedP4Stock);
+            unrealizedProfit += unrealizedP4Stock;
         }
         return unrealizedProfit;
     }
 
     public double updatePortfolioValue(String username){
         double portfolioValue = 0;
-        HashMap<String, List<Double>> initPrices = StockDatabase.getAllInitPrices(username);
-        for (Map.Entry<String, List<Double>>  entry : initPrices.entrySet()) {
-            String stockName = entry.getKey();
-            Stock currStock = Manager.getSingletonManager().getStock(stockName);
-            int totalAmountofStock = entry.getValue().size();
-            double worth = currStock.getPrice() * totalAmountofStock;
+        HashMap<String, double[]> aggregates = StockDatabase.getLotAggregates(username);
+        for (Map.Entry<String, double[]> entry : aggregates.entrySet()) {
+            Stock currStock = Manager.getSingletonManager().getStock(entry.getKey());
+            if (currStock == null) {
+                continue;
+            }
+            double worth = currStock.getPrice() * entry.getValue()[0];
             portfolioValue += worth;
         }
         return portfolioValue;
@@ -0,0 +1,89 @@
+/*
+  * StockQuotes.java
+  *
+  * Resident table of current stock prices (stockPrice.csv), so looking up a
+  * price is a map lookup instead of a parse of the price file. The table is
+  * only changed through StockDatabase (add, remove, price update), right
+  * after the CSV has been written. Every change publishes a new immutable
+  * snapshot and bumps the version, so readers never lock and can tell
+  * whether prices have moved since they last looked.
+  */
+
+package src;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+
+public class StockQuotes {
+    private static volatile Map<String, Double> quotes;
+    private static volatile long version = 0;
+
+    public static Stock get(String stockName) {
+        Double price = getQuotes().get(stockName);
+        if (price == null) {
+            return null;
+        }
+        return new Stock(stockName, price);
+    }
+
+    // Stocks in the order they were listed
+    public static List<Stock> getAll() {
+        List<Stock> ls = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : getQuotes().entrySet()) {
+            ls.add(new Stock(entry.getKey(), entry.getValue()));
+        }
+        return ls;
+    }
+
+    public static long getVersion() {
+        return version;
+    }
+
+    static synchronized void put(String stockName, double price) {
+        Map<String, Double> updated = new LinkedHashMap<>(getQuotes());
+        updated.put(stockName, price);
+        publish(updated);
+    }
+
+    static synchronized void remove(String stockName) {
+        Map<String, Double> updated = new LinkedHashMap<>(getQuotes());
+        updated.remove(stockName);
+        publish(updated);
+    }
+
+    private static void publish(Map<String, Double> updated) {
+        quotes = Collections.unmodifiableMap(updated);
+        version++;
+    }
+
+    private static Map<String, Double> getQuotes() {
+        Map<String, Double> current = quotes;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    private static synchronized Map<String, Double> load() {
+        if (quotes != null) {
+            return quotes;
+        }
+        Map<String, Double> loaded = new LinkedHashMap<>();
+        if (new File(StockDatabase.STOCK_PRICE_CSV_FILEPATH).exists()) {
+            try (CSVReader reader = new CSVReader(new FileReader(StockDatabase.STOCK_PRICE_CSV_FILEPATH))) {
+                for (String[] stock : reader.readAll()) {
+                    loaded.put(stock[0], Double.parseDouble(stock[1]));
+                }
+            } catch (IOException | CsvException e) {
+                e.printStackTrace();
+            }
+        }
+        publish(loaded);
+        return quotes;
+    }
+}
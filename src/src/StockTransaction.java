@@ -20,7 +20,7 @@ public class StockTransaction {
     private boolean isBuy;
 
     public StockTransaction(String username, String stockName, double price, int amount, boolean isBuy) {
-        this.date = CustomerDatabase.getDate();
+        this.date = BankClock.getDate();
         this.username = username;
         this.stockName = stockName;
         this.price = price;
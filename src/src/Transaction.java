@@ -20,7 +20,7 @@ public class Transaction {
     private int receiverAccountType;
 
     public Transaction(Currency currency, String sender, String receiver, int senderAccountType, int receiverAccountType) {
-        this.date = CustomerDatabase.getDate();
+        this.date = BankClock.getDate();
         this.currency = currency;
         this.sender = sender;
         this.receiver = receiver;
@@ -27,11 +27,20 @@ public class TransactionDatabase {
     public static final String STOCK_TRANSACTIONS_CSV_FILEPATH = "stockTransactions.csv";
 
     public static boolean createStockTransaction(StockTransaction stockTransaction) {
+        List<StockTransaction> stockTransactions = new ArrayList<>();
+        stockTransactions.add(stockTransaction);
+        return createStockTransactions(stockTransactions);
+    }
+
+    // Appends all stock transactions with one open of the file
+    public static boolean createStockTransactions(List<StockTransaction> stockTransactions) {
         try (CSVWriter writer = new CSVWriter(new FileWriter(STOCK_TRANSACTIONS_CSV_FILEPATH, true))) {
-            String[] account = {stockTransaction.getDate().toString(), stockTransaction.getUsername(),
-                stockTransaction.getStockName(), String.valueOf(stockTransaction.getPrice()), 
-                String.valueOf(stockTransaction.getAmount()), String.valueOf(stockTransaction.isBuy())};
-            writer.writeNext(account);
+            for (StockTransaction stockTransaction : stockTransactions) {
+                String[] account = {stockTransaction.getDate().toString(), stockTransaction.getUsername(),
+                    stockTransaction.getStockName(), String.valueOf(stockTransaction.getPrice()), 
+                    String.valueOf(stockTransaction.getAmount()), String.valueOf(stockTransaction.isBuy())};
+                writer.writeNext(account);
+            }
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -65,67 +74,85 @@ public class TransactionDatabase {
         return ls;
     }
 
+    // Customer transactions live in TransactionLog, which splits them into
+    // monthly segments and indexes them per (username, accountType)
     public static boolean createTransaction(Transaction transaction) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(CUSTOMER_TRANSACTIONS_CSV_FILEPATH, true))) {
-            String[] account = {transaction.getDate().toString(), String.valueOf(transaction.getCurrency().getCurrencyType()),
-                String.valueOf(transaction.getCurrency().getAmount()), transaction.getSender(), 
-                String.valueOf(transaction.getSenderAccountType()), transaction.getReceiver(),
-                String.valueOf(transaction.getReceiverAccountType())};
-            writer.writeNext(account);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(transaction);
+        return createTransactions(transactions);
+    }
+
+    // Writes all transactions with one append per segment and adds them to
+    // the daily aggregates. The log dates the rows with the bank's date when
+    // they are written, which is the date the aggregates use
+    public static boolean createTransactions(List<Transaction> transactions) {
+        List<String[]> rows = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            rows.add(toRow(transaction));
         }
+        return DailyAggregates.append(rows);
     }
 
     public static List<Transaction> getAllTransactions() {
+        List<String[]> rows = TransactionLog.readAll();
+        if (rows == null) {
+            return null;
+        }
         List<Transaction> ls = new ArrayList<>();
-        boolean fileExists = new File(CUSTOMER_TRANSACTIONS_CSV_FILEPATH).exists();
-        
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_TRANSACTIONS_CSV_FILEPATH))) {
-                List<String[]> transactions = reader.readAll();
-                for (String[] transaction : transactions) {
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                    LocalDate localDate = LocalDate.parse(transaction[0], formatter);
-                    Transaction t = new Transaction(localDate, new Currency(Double.parseDouble(transaction[2]), 
-                            Integer.parseInt(transaction[1])), transaction[3], transaction[5], 
-                            Integer.parseInt(transaction[4]), Integer.parseInt(transaction[6]));
-                    ls.add(t);
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return null;
-            }
+        for (String[] transaction : rows) {
+            ls.add(toTransaction(transaction));
         }
         return ls;
     }
 
     public static List<Transaction> getTransactionsFromUser(String username, int accountType) {
+        List<String[]> rows = TransactionLog.readRows(username, accountType);
+        if (rows == null) {
+            return null;
+        }
         List<Transaction> ls = new ArrayList<>();
-        boolean fileExists = new File(CUSTOMER_TRANSACTIONS_CSV_FILEPATH).exists();
+        for (String[] transaction : rows) {
+            ls.add(toTransaction(transaction));
+        }
+        return ls;
+    }
 
-        if (fileExists) {
-            try (CSVReader reader = new CSVReader(new FileReader(CUSTOMER_TRANSACTIONS_CSV_FILEPATH))) {
-                List<String[]> transactions = reader.readAll();
-                for (String[] transaction : transactions) {
-                    if ((transaction[3].equals(username) && transaction[4].equals(String.valueOf(accountType))) ||
-                            (transaction[5].equals(username) && transaction[6].equals(String.valueOf(accountType)))) {
-                        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                        LocalDate localDate = LocalDate.parse(transaction[0], formatter);
-                        Transaction t = new Transaction(localDate, new Currency(Double.parseDouble(transaction[2]), 
-                                Integer.parseInt(transaction[1])), transaction[3], transaction[5], 
-                                Integer.parseInt(transaction[4]), Integer.parseInt(transaction[6]));
-                        ls.add(t);
-                    }
-                    
-                }
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-                return null;
-            }
+    // Transactions touching any account of username, or of everyone when
+    // username is null. Nothing is read until pages are asked for
+    public static TransactionLog.Selection selectTransactions(String username, boolean newestFirst) {
+        return TransactionLog.select(username, newestFirst);
+    }
+
+    // Transactions made on date, read from that day's rows only
+    public static List<Transaction> getTransactionsOn(LocalDate date) {
+        TransactionLog.Selection day = TransactionLog.selectDay(date);
+        return getTransactions(day, 0, day.size());
+    }
+
+    public static List<Transaction> getTransactions(TransactionLog.Selection selection, int from, int count) {
+        List<String[]> rows = selection.read(from, count);
+        if (rows == null) {
+            return null;
+        }
+        List<Transaction> ls = new ArrayList<>();
+        for (String[] transaction : rows) {
+            ls.add(toTransaction(transaction));
         }
         return ls;
     }
+
+    private static String[] toRow(Transaction transaction) {
+        return new String[] {transaction.getDate().toString(), String.valueOf(transaction.getCurrency().getCurrencyType()),
+            Money.format(transaction.getCurrency().getMinorUnits()), transaction.getSender(),
+            String.valueOf(transaction.getSenderAccountType()), transaction.getReceiver(),
+            String.valueOf(transaction.getReceiverAccountType())};
+    }
+
+    static Transaction toTransaction(String[] transaction) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        LocalDate localDate = LocalDate.parse(transaction[0], formatter);
+        return new Transaction(localDate, new Currency(Double.parseDouble(transaction[2]),
+                Integer.parseInt(transaction[1])), transaction[3], transaction[5],
+                Integer.parseInt(transaction[4]), Integer.parseInt(transaction[6]));
+    }
 }
@@ -0,0 +1,532 @@
+/*
+  * TransactionLog.java
+  *
+  * Append-only storage behind TransactionDatabase for customer transactions.
+  * The log is split into one segment per simulated month
+  * (customerTransactions_2024-05.csv, ...) and every row appended is also
+  * recorded in a posting list per (username, accountType) holding the
+  * segment and byte offset of the row. Reading one customer's history is
+  * then a handful of seeks proportional to that customer's activity instead
+  * of a parse of the bank's whole history. All rows are also kept in one
+  * list in append order, so a report can select, filter and page through
+  * the whole history without reading the rows it does not show. New rows
+  * are dated with the bank's date while the log is locked for the append,
+  * and that date only moves forward, so append order is also date order and
+  * the rows of one day are found by a binary search over that list.
+  *
+  * Rows keep the layout of the old customerTransactions.csv:
+  * date, currencyType, amount, sender, senderAccountType, receiver, receiverAccountType
+  */
+
+package src;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+public class TransactionLog {
+    public static final String SEGMENT_PREFIX = "customerTransactions_";
+    public static final String SEGMENT_SUFFIX = ".csv";
+    public static final String POSTINGS_CSV_FILEPATH = "customerTransactionsIndex.csv";
+    private static final DateTimeFormatter SEGMENT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final int READ_CHUNK = 256;
+
+    // Where a single row lives
+    private static class Posting {
+        String segment;
+        long offset;
+        // index of the row in append order
+        int position;
+
+        Posting(String segment, long offset, int position) {
+            this.segment = segment;
+            this.offset = offset;
+            this.position = position;
+        }
+    }
+
+    // Rows chosen by select, sorted and filtered by the log itself. Reading a
+    // page only seeks to the rows of that page
+    public static class Selection {
+        // null selects the rows from start on
+        private final int[] positions;
+        private final int start;
+        private final int size;
+        private final boolean newestFirst;
+
+        private Selection(int[] positions, int start, int size, boolean newestFirst) {
+            this.positions = positions;
+            this.start = start;
+            this.size = size;
+            this.newestFirst = newestFirst;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isNewestFirst() {
+            return newestFirst;
+        }
+
+        // Rows from index from to from + count - 1 of the selection
+        public List<String[]> read(int from, int count) {
+            int end = Math.min(size, from + count);
+            int[] page = new int[Math.max(0, end - from)];
+            for (int i = from; i < end; i++) {
+                int index = newestFirst ? size - 1 - i : i;
+                page[i - from] = positions == null ? start + index : positions[index];
+            }
+            return readPositions(page);
+        }
+    }
+
+    private static final Object lock = new Object();
+    // "accountType:username" -> rows touching that account, in append order
+    private static Map<String, List<Posting>> postings;
+    // Every row in append order
+    private static List<Posting> allRows;
+
+    // Appends new rows dated with the bank's date at the time of writing.
+    // The date is read under the log's lock, so no row can follow a newer one
+    public static boolean appendToday(List<String[]> rows) {
+        synchronized (lock) {
+            String today = BankClock.getDate().toString();
+            for (String[] row : rows) {
+                row[0] = today;
+            }
+            return append(rows);
+        }
+    }
+
+    // Appends rows in order, opening each segment and the posting file once
+    public static boolean append(List<String[]> rows) {
+        synchronized (lock) {
+            ensureLoaded();
+            List<String[]> newPostings = new ArrayList<>();
+            StringWriter buffer = new StringWriter();
+            try (CSVWriter formatter = new CSVWriter(buffer)) {
+                int i = 0;
+                while (i < rows.size()) {
+                    String segment = segmentOf(rows.get(i));
+                    File file = new File(segmentFilePath(segment));
+                    long offset = file.length();
+                    try (OutputStream out = new FileOutputStream(file, true)) {
+                        while (i < rows.size() && segmentOf(rows.get(i)).equals(segment)) {
+                            byte[] bytes = format(formatter, buffer, rows.get(i));
+                            out.write(bytes);
+                            addPostings(newPostings, rows.get(i), segment, offset);
+                            offset += bytes.length;
+                            i++;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            return writePostings(newPostings);
+        }
+    }
+
+    // Every row of every segment, oldest first
+    public static List<String[]> readAll() {
+        synchronized (lock) {
+            ensureLoaded();
+            List<String[]> rows = new ArrayList<>();
+            for (String segment : getSegments()) {
+                try (CSVReader reader = new CSVReader(new FileReader(segmentFilePath(segment)))) {
+                    rows.addAll(reader.readAll());
+                } catch (IOException | CsvException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+            return rows;
+        }
+    }
+
+    // Rows where username's accountType account is the sender or the receiver, oldest first
+    public static List<String[]> readRows(String username, int accountType) {
+        synchronized (lock) {
+            ensureLoaded();
+            List<Posting> list = postings.get(key(username, accountType));
+            if (list == null) {
+                return new ArrayList<>();
+            }
+            return read(list);
+        }
+    }
+
+    // Reads the rows of list, keeping a segment open while consecutive rows are in it
+    private static List<String[]> read(List<Posting> list) {
+        List<String[]> result = new ArrayList<>();
+        RandomAccessFile file = null;
+        String openSegment = null;
+        try {
+            for (Posting posting : list) {
+                if (!posting.segment.equals(openSegment)) {
+                    if (file != null) {
+                        file.close();
+                    }
+                    file = new RandomAccessFile(segmentFilePath(posting.segment), "r");
+                    openSegment = posting.segment;
+                }
+                String[] row = parseLine(readLineAt(file, posting.offset));
+                if (row != null) {
+                    result.add(row);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return result;
+    }
+
+    // Rows where any account of username is the sender or the receiver, or
+    // every row when username is null
+    public static Selection select(String username, boolean newestFirst) {
+        synchronized (lock) {
+            ensureLoaded();
+            if (username == null) {
+                return new Selection(null, 0, allRows.size(), newestFirst);
+            }
+            BitSet selected = new BitSet(allRows.size());
+            for (Map.Entry<String, List<Posting>> entry : postings.entrySet()) {
+                String key = entry.getKey();
+                if (key.substring(key.indexOf(':') + 1).equals(username)) {
+                    for (Posting posting : entry.getValue()) {
+                        selected.set(posting.position);
+                    }
+                }
+            }
+            return new Selection(selected.stream().toArray(), 0, selected.cardinality(), newestFirst);
+        }
+    }
+
+    // Rows from position in append order on, oldest first
+    public static Selection selectFrom(int position) {
+        synchronized (lock) {
+            ensureLoaded();
+            int start = Math.min(position, allRows.size());
+            return new Selection(null, start, allRows.size() - start, false);
+        }
+    }
+
+    // Rows made on date, oldest first
+    public static Selection selectDay(LocalDate date) {
+        synchronized (lock) {
+            ensureLoaded();
+            int first = firstRowOn(date);
+            int end = firstRowOn(date.plusDays(1));
+            return new Selection(null, first, end - first, false);
+        }
+    }
+
+    // Position of the first row made on or after date. The month is found from
+    // the segment names alone, only rows probed inside the month are read
+    private static int firstRowOn(LocalDate date) {
+        String segment = segmentOf(date);
+        int low = 0;
+        int high = allRows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (allRows.get(mid).segment.compareTo(segment) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int monthStart = low;
+        high = allRows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (allRows.get(mid).segment.equals(segment)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int monthEnd = low;
+        if (monthStart == monthEnd) {
+            return monthStart;
+        }
+
+        low = monthStart;
+        high = monthEnd;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFilePath(segment), "r")) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                String[] row = parseLine(readLineAt(file, allRows.get(mid).offset));
+                if (row != null && LocalDate.parse(row[0]).isBefore(date)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return low;
+    }
+
+    // Rows at the given positions, in the order given
+    private static List<String[]> readPositions(int[] positions) {
+        synchronized (lock) {
+            ensureLoaded();
+            List<Posting> list = new ArrayList<>();
+            for (int position : positions) {
+                list.add(allRows.get(position));
+            }
+            return read(list);
+        }
+    }
+
+    // Segment names ("yyyy-MM") on disk, oldest first
+    public static List<String> getSegments() {
+        List<String> segments = new ArrayList<>();
+        File[] files = new File(".").listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    public static String segmentFilePath(String segment) {
+        return SEGMENT_PREFIX + segment + SEGMENT_SUFFIX;
+    }
+
+    public static String segmentOf(LocalDate date) {
+        return date.format(SEGMENT_FORMAT);
+    }
+
+    private static String segmentOf(String[] row) {
+        return segmentOf(LocalDate.parse(row[0]));
+    }
+
+    private static String key(String username, int accountType) {
+        return accountType + ":" + username;
+    }
+
+    private static void addPostings(List<String[]> newPostings, String[] row, String segment, long offset) {
+        newPostings.add(new String[] {row[3], row[4], segment, String.valueOf(offset)});
+        if (!(row[3].equals(row[5]) && row[4].equals(row[6]))) {
+            newPostings.add(new String[] {row[5], row[6], segment, String.valueOf(offset)});
+        }
+    }
+
+    private static boolean writePostings(List<String[]> newPostings) {
+        try (CSVWriter writer = new CSVWriter(new FileWriter(POSTINGS_CSV_FILEPATH, true))) {
+            writer.writeAll(newPostings);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        for (String[] posting : newPostings) {
+            index(posting);
+        }
+        return true;
+    }
+
+    // The postings of one row are always written next to each other
+    private static void index(String[] posting) {
+        String segment = posting[2];
+        long offset = Long.parseLong(posting[3]);
+        Posting row = allRows.isEmpty() ? null : allRows.get(allRows.size() - 1);
+        if (row == null || row.offset != offset || !row.segment.equals(segment)) {
+            row = new Posting(segment, offset, allRows.size());
+            allRows.add(row);
+        }
+        postings.computeIfAbsent(key(posting[0], Integer.parseInt(posting[1])), k -> new ArrayList<>()).add(row);
+    }
+
+    private static byte[] format(CSVWriter formatter, StringWriter buffer, String[] row) throws IOException {
+        buffer.getBuffer().setLength(0);
+        formatter.writeNext(row);
+        formatter.flush();
+        return buffer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readLineAt(RandomAccessFile file, long offset) throws IOException {
+        file.seek(offset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(READ_CHUNK);
+        byte[] chunk = new byte[READ_CHUNK];
+        int read;
+        while ((read = file.read(chunk)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (chunk[i] == '\n') {
+                    line.write(chunk, 0, i);
+                    return new String(line.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+            line.write(chunk, 0, read);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String[] parseLine(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try (CSVReader reader = new CSVReader(new StringReader(line))) {
+            return reader.readNext();
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void ensureLoaded() {
+        if (postings != null) {
+            return;
+        }
+        postings = new HashMap<>();
+        allRows = new ArrayList<>();
+        if (migrateLegacyLog()) {
+            return;
+        }
+        Map<String, Long> lastOffsets = new HashMap<>();
+        String lastSegment = null;
+        if (new File(POSTINGS_CSV_FILEPATH).exists()) {
+            try (CSVReader reader = new CSVReader(new FileReader(POSTINGS_CSV_FILEPATH))) {
+                String[] posting;
+                while ((posting = reader.readNext()) != null) {
+                    if (posting.length < 4) {
+                        continue;
+                    }
+                    index(posting);
+                    lastOffsets.merge(posting[2], Long.parseLong(posting[3]), Math::max);
+                    lastSegment = posting[2];
+                }
+            } catch (IOException | CsvException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        // Rows written right before a crash may be missing their postings. The
+        // segment of the last posting goes first, so a posting its row is still
+        // missing is written right after the ones it has
+        List<String> segments = getSegments();
+        if (lastSegment != null && segments.remove(lastSegment)) {
+            segments.add(0, lastSegment);
+        }
+        for (String segment : segments) {
+            catchUp(segment, lastOffsets.get(segment));
+        }
+    }
+
+    // Indexes every row of segment after the one at lastOffset, and the
+    // postings of that row itself that a crash kept from being written
+    private static void catchUp(String segment, Long lastOffset) {
+        List<String[]> newPostings = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(segmentFilePath(segment), "r")) {
+            long offset = 0;
+            if (lastOffset != null) {
+                String last = readLineAt(file, lastOffset);
+                String[] row = parseLine(last);
+                if (row != null && row.length >= 7) {
+                    List<String[]> rowPostings = new ArrayList<>();
+                    addPostings(rowPostings, row, segment, lastOffset);
+                    for (String[] posting : rowPostings) {
+                        if (!isIndexed(posting)) {
+                            newPostings.add(posting);
+                        }
+                    }
+                }
+                offset = lastOffset + last.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+            while (offset < file.length()) {
+                String line = readLineAt(file, offset);
+                String[] row = parseLine(line);
+                if (row != null && row.length >= 7) {
+                    addPostings(newPostings, row, segment, offset);
+                }
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!newPostings.isEmpty()) {
+            writePostings(newPostings);
+        }
+    }
+
+    private static boolean isIndexed(String[] posting) {
+        List<Posting> rows = postings.get(key(posting[0], Integer.parseInt(posting[1])));
+        if (rows == null) {
+            return false;
+        }
+        long offset = Long.parseLong(posting[3]);
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (rows.get(i).offset == offset && rows.get(i).segment.equals(posting[2])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Moves the rows of the single customerTransactions.csv into segments.
+    // The old file is renamed to .migrating first so an interrupted migration
+    // is redone from scratch on the next start. Returns true if it migrated.
+    private static boolean migrateLegacyLog() {
+        File legacy = new File(TransactionDatabase.CUSTOMER_TRANSACTIONS_CSV_FILEPATH);
+        File migrating = new File(legacy.getPath() + ".migrating");
+        if (migrating.exists()) {
+            for (String segment : getSegments()) {
+                new File(segmentFilePath(segment)).delete();
+            }
+            new File(POSTINGS_CSV_FILEPATH).delete();
+        } else if (legacy.exists() && getSegments().isEmpty()) {
+            if (!legacy.renameTo(migrating)) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+
+        List<String[]> rows;
+        try (CSVReader reader = new CSVReader(new FileReader(migrating))) {
+            rows = reader.readAll();
+        } catch (IOException | CsvException e) {
+            e.printStackTrace();
+            return false;
+        }
+        rows.removeIf(row -> row.length < 7);
+        // The old file is in the order rows were written, which is not always date order
+        rows.sort(Comparator.comparing(row -> row[0]));
+        if (append(rows)) {
+            migrating.renameTo(new File(legacy.getPath() + ".migrated"));
+        }
+        return true;
+    }
+}